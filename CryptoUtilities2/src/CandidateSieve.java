@@ -0,0 +1,259 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Segmented small-prime sieve over the candidates at or above a starting
+ * number. The residues of the current window base modulo each small prime are
+ * kept and advanced incrementally from one window to the next, so the only
+ * full-size arithmetic per window is one addition; candidates with a small
+ * prime factor are struck out before anyone runs an expensive test on them.
+ *
+ * @author Ayman Abumaike
+ *
+ */
+final class CandidateSieve {
+
+    /**
+     * Number of small (odd) primes used to strike out candidates.
+     */
+    private static final int PRIME_COUNT = 2048;
+
+    /**
+     * Number of odd candidates in one window.
+     */
+    private static final int WINDOW = 4096;
+
+    /**
+     * Radix of the {@code NaturalNumber} digits.
+     */
+    private static final int RADIX = 10;
+
+    /**
+     * Useful constant, not a magic number: 3.
+     */
+    private static final int THREE = 3;
+
+    /**
+     * The first PRIME_COUNT odd primes, in increasing order.
+     */
+    private static final int[] SMALL_PRIMES = oddPrimes(PRIME_COUNT);
+
+    /**
+     * Odd number at which the current window starts.
+     */
+    private final NaturalNumber base;
+
+    /**
+     * residues[i] = base mod SMALL_PRIMES[i].
+     */
+    private final int[] residues;
+
+    /**
+     * composite[j] is true iff base + 2j has been struck out.
+     */
+    private final boolean[] composite;
+
+    /**
+     * Scratch number holding 2 * WINDOW, added to base to move on.
+     */
+    private final NaturalNumber step;
+
+    /**
+     * Index in the current window of the next candidate to look at.
+     */
+    private int position;
+
+    /**
+     * Whether 2 still has to be produced before the odd candidates.
+     */
+    private boolean twoPending;
+
+    /**
+     * Constructor.
+     *
+     * @param start
+     *            smallest number that may be produced
+     * @requires start > 1
+     */
+    CandidateSieve(NaturalNumber start) {
+        this.twoPending = start.canConvertToInt() && start.toInt() <= 2;
+        this.base = start.newInstance();
+        this.base.copyFrom(start);
+        if (CryptoUtilities2.isEven(this.base)) {
+            this.base.increment();
+        }
+        this.residues = residues(this.base, SMALL_PRIMES);
+        this.composite = new boolean[WINDOW];
+        this.step = start.newInstance();
+        this.step.setFromInt(2 * WINDOW);
+        this.sieveWindow();
+    }
+
+    /**
+     * Returns the first {@code count} odd primes.
+     *
+     * @param count
+     *            number of primes wanted
+     * @return the first count odd primes, in increasing order
+     * @requires count > 0
+     */
+    private static int[] oddPrimes(int count) {
+        /*
+         * The k-th prime is below k * (ln k + ln ln k) for k >= 6, and the
+         * count-th odd prime is the (count + 1)-st prime; the plain sieve of
+         * Eratosthenes up to there is enough
+         */
+        final int small = 16;
+        double c = Math.max(count + 1, small);
+        int limit = (int) (c * (Math.log(c) + Math.log(Math.log(c)))) + 1;
+        boolean[] crossed = new boolean[limit + 1];
+        int[] primes = new int[count];
+        int found = 0;
+        for (int i = THREE; i <= limit && found < count; i += 2) {
+            if (!crossed[i]) {
+                primes[found] = i;
+                found++;
+                for (long j = (long) i * i; j <= limit; j += 2 * i) {
+                    crossed[(int) j] = true;
+                }
+            }
+        }
+        return primes;
+    }
+
+    /**
+     * Returns the first {@code count} odd primes, taken from the table this
+     * sieve uses.
+     *
+     * @param count
+     *            number of primes wanted
+     * @return the first count odd primes, in increasing order
+     * @requires 0 < count <= 2048
+     */
+    static int[] smallPrimes(int count) {
+        assert 0 < count && count <= PRIME_COUNT : ""
+                + "Violation of: 0 < count <= 2048";
+        int[] result = new int[count];
+        System.arraycopy(SMALL_PRIMES, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Returns the residues of n modulo each of the given primes.
+     *
+     * @param n
+     *            the number
+     * @param primes
+     *            the moduli
+     * @return residues[i] = n mod primes[i]
+     */
+    static int[] residues(NaturalNumber n, int[] primes) {
+        /*
+         * Unload the decimal digits once, then run Horner's rule for every
+         * modulus using int arithmetic only
+         */
+        NaturalNumber copyN = n.newInstance();
+        copyN.copyFrom(n);
+        int[] digits = new int[RADIX];
+        int length = 0;
+        while (!copyN.isZero()) {
+            if (length == digits.length) {
+                int[] bigger = new int[2 * digits.length];
+                System.arraycopy(digits, 0, bigger, 0, length);
+                digits = bigger;
+            }
+            digits[length] = copyN.divideBy10();
+            length++;
+        }
+        int[] result = new int[primes.length];
+        for (int i = 0; i < primes.length; i++) {
+            int p = primes[i];
+            int r = 0;
+            for (int j = length - 1; j >= 0; j--) {
+                r = (r * RADIX + digits[j]) % p;
+            }
+            result[i] = r;
+        }
+        return result;
+    }
+
+    /**
+     * Strikes out every candidate in the current window that has a small
+     * prime factor (other than itself).
+     */
+    private void sieveWindow() {
+        /*
+         * The base only matters as an int while it is small enough that a
+         * small prime itself could be one of the candidates
+         */
+        int smallBase = -1;
+        if (this.base.canConvertToInt()) {
+            smallBase = this.base.toInt();
+        }
+        for (int j = 0; j < WINDOW; j++) {
+            this.composite[j] = false;
+        }
+        for (int i = 0; i < SMALL_PRIMES.length; i++) {
+            int p = SMALL_PRIMES[i];
+            /*
+             * First j with base + 2j = 0 (mod p), using 1/2 = (p+1)/2 (mod p)
+             */
+            int j = ((p - this.residues[i]) % p) * ((p + 1) / 2) % p;
+            if (0 <= smallBase && smallBase <= p && smallBase + 2 * j == p) {
+                j += p;
+            }
+            while (j < WINDOW) {
+                this.composite[j] = true;
+                j += p;
+            }
+        }
+        this.position = 0;
+    }
+
+    /**
+     * Moves the window to the next 2 * WINDOW numbers.
+     */
+    private void advance() {
+        this.base.add(this.step);
+        for (int i = 0; i < SMALL_PRIMES.length; i++) {
+            this.residues[i] = (this.residues[i] + 2 * WINDOW)
+                    % SMALL_PRIMES[i];
+        }
+        this.sieveWindow();
+    }
+
+    /**
+     * Replaces n by the next candidate that survived the sieve.
+     *
+     * @param n
+     *            the next candidate (on return)
+     * @replaces n
+     * @ensures <pre>
+     * n = [smallest number not yet produced by this sieve, that is at least
+     *      start, and that has no prime factor among the small primes other
+     *      than itself]
+     * </pre>
+     */
+    void next(NaturalNumber n) {
+        if (this.twoPending) {
+            n.setFromInt(2);
+            this.twoPending = false;
+        } else {
+            while (this.position < WINDOW && this.composite[this.position]) {
+                this.position++;
+            }
+            while (this.position == WINDOW) {
+                this.advance();
+                while (this.position < WINDOW
+                        && this.composite[this.position]) {
+                    this.position++;
+                }
+            }
+            NaturalNumber offset = n.newInstance();
+            offset.setFromInt(2 * this.position);
+            n.copyFrom(this.base);
+            n.add(offset);
+            this.position++;
+        }
+    }
+
+}
@@ -1,7 +1,13 @@
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.random.RandomGenerator;
+
 import components.naturalnumber.NaturalNumber;
 import components.naturalnumber.NaturalNumber2;
-import components.random.Random;
-import components.random.Random1L;
 import components.simplereader.SimpleReader;
 import components.simplereader.SimpleReader1L;
 import components.simplewriter.SimpleWriter;
@@ -27,9 +33,63 @@ public final class CryptoUtilities2 {
     private static final int THREE = 3;
 
     /**
-     * Pseudo-random number generator.
+     * Useful constant, not a magic number: 5.
+     */
+    private static final int FIVE = 5;
+
+    /**
+     * Number of random witnesses tried by isPrime2 above the deterministic
+     * bound.
+     */
+    private static final int WITNESS_ROUNDS = 50;
+
+    /**
+     * Below this bound, Miller-Rabin with the first 13 primes as bases is
+     * exact (Sorenson and Webster). Kept as a string because NaturalNumber
+     * operations may modify (and restore) their arguments, so a shared
+     * NaturalNumber constant would not be safe to use from several threads.
+     */
+    private static final String DETERMINISTIC_BOUND = ""
+            + "3317044064679887385961981";
+
+    /**
+     * Bases that make Miller-Rabin exact below DETERMINISTIC_BOUND.
+     */
+    private static final int[] DETERMINISTIC_BASES = { 2, 3, 5, 7, 11, 13, 17,
+        19, 23, 29, 31, 37, 41 };
+
+    /**
+     * Number of decimal digits in one chunk drawn by randomNumber.
+     */
+    private static final int CHUNK_DIGITS = 9;
+
+    /**
+     * 10^CHUNK_DIGITS.
+     */
+    private static final int CHUNK = 1000000000;
+
+    /**
+     * Fewest digits in the leading part drawn by randomNumber; a head of at
+     * least 10^9 keeps the chance of a rejection below 10^-9.
      */
-    private static final Random GENERATOR = new Random1L();
+    private static final int HEAD_MIN_DIGITS = 10;
+
+    /**
+     * Pseudo-random number generator, one per thread, so randomNumber can be
+     * called from several threads at once without sharing a generator.
+     */
+    private static final ThreadLocal<SplittableRandom> GENERATOR = ThreadLocal
+            .withInitial(SplittableRandom::new);
+
+    /**
+     * Cache consulted by isPrime2, or null if there is none.
+     */
+    private static volatile PrimalityCache primalityCache = null;
+
+    /**
+     * Cancellation check of a test that is never abandoned.
+     */
+    private static final BooleanSupplier NEVER = () -> false;
 
     /**
      * Returns a random number uniformly distributed in the interval [0, n].
@@ -44,42 +104,105 @@ public final class CryptoUtilities2 {
      */
     public static NaturalNumber randomNumber(NaturalNumber n) {
         assert !n.isZero() : "Violation of: n > 0";
-        final int base = 10;
-        NaturalNumber result;
-        int d = n.divideBy10();
-        if (n.isZero()) {
+
+        return randomNumber(n, GENERATOR.get());
+    }
+
+    /**
+     * Returns a random number uniformly distributed in the interval [0, n],
+     * drawn from {@code random}. Callers that need unpredictable numbers
+     * (e.g., key material) pass a {@code java.security.SecureRandom}.
+     *
+     * @param n
+     *            top end of interval
+     * @param random
+     *            source of randomness
+     * @return random number in interval
+     * @requires n > 0
+     * @ensures <pre>
+     * randomNumber = [a random number uniformly distributed in [0, n]]
+     * </pre>
+     */
+    public static NaturalNumber randomNumber(NaturalNumber n,
+            RandomGenerator random) {
+        assert !n.isZero() : "Violation of: n > 0";
+        assert random != null : "Violation of: random is not null";
+
+        NaturalNumber result = n.newInstance();
+        long value = LongArithmetic.toLongIfFits(n);
+        if (value >= 0 && value < Long.MAX_VALUE) {
             /*
-             * Incoming n has only one digit and it is d, so generate a random
-             * number uniformly distributed in [0, d]
+             * n + 1 fits in a long, so a single bounded draw is exactly
+             * uniform in [0, n]
              */
-            int x = (int) ((d + 1) * GENERATOR.nextDouble());
-            result = new NaturalNumber2(x);
-            n.multiplyBy10(d);
+            LongArithmetic.setFromLong(result, random.nextLong(value + 1));
         } else {
             /*
-             * Incoming n has more than one digit, so generate a random number
-             * (NaturalNumber) uniformly distributed in [0, n], and another
-             * (int) uniformly distributed in [0, 9] (i.e., a random digit)
+             * Split the digits of n into a head of 10 to 18 digits and k
+             * chunks of 9 digits. A candidate made of a head uniform in
+             * [0, head of n] and k uniformly random chunks is uniform in
+             * [0, (head of n + 1) * 10^(9k) - 1], which contains [0, n], so
+             * keeping only candidates <= n gives a uniform result. The
+             * candidate can only exceed n when its head equals that of n
+             * (probability below 10^-9), and in that case the chunks are
+             * compared as they are drawn, so a rejection is noticed at once
              */
-            result = randomNumber(n);
-            int lastDigit = (int) (base * GENERATOR.nextDouble());
-            result.multiplyBy10(lastDigit);
-            n.multiplyBy10(d);
-            if (result.compareTo(n) > 0) {
-                /*
-                 * In this case, we need to try again because generated number
-                 * is greater than n; the recursive call's argument is not
-                 * "smaller" than the incoming value of n, but this recursive
-                 * call has no more than a 90% chance of being made (and for
-                 * large n, far less than that), so the probability of
-                 * termination is 1
-                 */
-                result = randomNumber(n);
+            String digits = n.toString();
+            int chunks = (digits.length() - HEAD_MIN_DIGITS) / CHUNK_DIGITS;
+            int headLength = digits.length() - chunks * CHUNK_DIGITS;
+            long head = Long.parseLong(digits.substring(0, headLength));
+            char[] candidate = new char[digits.length()];
+            boolean accepted = false;
+            while (!accepted) {
+                long top = random.nextLong(head + 1);
+                writeDigits(candidate, 0, headLength, top);
+                boolean tight = top == head;
+                accepted = true;
+                int position = headLength;
+                while (accepted && position < candidate.length) {
+                    int chunk = random.nextInt(CHUNK);
+                    if (tight) {
+                        int bound = Integer.parseInt(digits.substring(position,
+                                position + CHUNK_DIGITS));
+                        accepted = chunk <= bound;
+                        tight = chunk == bound;
+                    }
+                    writeDigits(candidate, position, CHUNK_DIGITS, chunk);
+                    position += CHUNK_DIGITS;
+                }
+            }
+            for (char c : candidate) {
+                result.multiplyBy10(c - '0');
             }
         }
         return result;
     }
 
+    /**
+     * Writes the {@code width} low-order decimal digits of v into
+     * {@code digits[offset, offset + width)}, most significant first.
+     *
+     * @param digits
+     *            the digit array
+     * @param offset
+     *            where the digits go
+     * @param width
+     *            how many digits to write
+     * @param v
+     *            the value
+     * @updates digits
+     * @requires 0 <= offset and offset + width <= |digits| and v >= 0
+     */
+    private static void writeDigits(char[] digits, int offset, int width,
+            long v) {
+        final int radix = 10;
+        long rest = v;
+        for (int i = offset + width - 1; i >= offset; i--) {
+            digits[i] = (char) ('0' + rest % radix);
+            rest /= radix;
+        }
+    }
+
     /**
      * Finds the greatest common divisor of n and m.
      *
@@ -93,47 +216,175 @@ public final class CryptoUtilities2 {
      */
     public static void reduceToGCD(NaturalNumber n, NaturalNumber m) {
 
-        /*
-         * Use Euclid's algorithm; in pseudocode: if m = 0 then GCD(n, m) = n
-         * else GCD(n, m) = GCD(m, n mod m)
-         */
-
-        /*
-         * keeps original value of n
-         */
-        NaturalNumber copyN = n.newInstance();
-        copyN.copyFrom(n);
-        /*
-         * if m is zero, then GCD(n,m) is just n
-         */
-        if (m.isZero()) {
-            n.copyFrom(copyN);
+        if (n instanceof NaturalNumber4 && m instanceof NaturalNumber4) {
+            binaryGCD((NaturalNumber4) n, (NaturalNumber4) m);
         } else {
             /*
-             * n2 copies n to be divided by m, to get the remainder. this is
-             * done so n doesn't become affected by the division
+             * Use Euclid's algorithm; in pseudocode: if m = 0 then GCD(n, m) =
+             * n else GCD(n, m) = GCD(m, n mod m). Done as a loop so there is
+             * one division per step, no copies, and no recursion depth to
+             * worry about: (n, m) becomes (m, n mod m) until m = 0
              */
-            NaturalNumber n2 = n.newInstance();
-            n2.copyFrom(n);
-            NaturalNumber remainder = n2.divide(m);
+            while (!m.isZero()) {
+                NaturalNumber remainder = n.divide(m);
+                n.transferFrom(m);
+                m.transferFrom(remainder);
+            }
+        }
+
+    }
+
+    /**
+     * Finds the greatest common divisor of n and m with Stein's binary
+     * algorithm, which needs only shifts and subtractions.
+     *
+     * @param n
+     *            one number
+     * @param m
+     *            the other number
+     * @updates n
+     * @clears m
+     * @ensures n = [greatest common divisor of #n and #m]
+     */
+    private static void binaryGCD(NaturalNumber4 n, NaturalNumber4 m) {
+        if (n.isZero()) {
+            n.transferFrom(m);
+        } else if (!m.isZero()) {
             /*
-             * if the remainder is zero, then the last value of m is transfered
-             * to n, and m is cleared. otherwise, this method will recursively
-             * call it self until the remainder of n divided by m ends up as 0.
-             * Each loop, n2 mod m(the remainder) is used as one of the formal
-             * parameters because of Euclid's algorithm. GCD(n, m) = GCD(m, n
-             * mod m) is the same as reduceToGCD(m,remainder)
+             * gcd(a, b) = 2^k * gcd(a', b') where 2^k is the largest power of
+             * 2 dividing both, and a', b' are a, b with all factors of 2
+             * removed; after that, replace the larger by the (even)
+             * difference, strip its factors of 2, and repeat
              */
-            if (remainder.isZero()) {
-                n.transferFrom(m);
+            int shift = Math.min(n.getLowestSetBit(), m.getLowestSetBit());
+            NaturalNumber4 a = n;
+            NaturalNumber4 b = m;
+            a.shiftRight(a.getLowestSetBit());
+            while (!b.isZero()) {
+                b.shiftRight(b.getLowestSetBit());
+                if (a.compareTo(b) > 0) {
+                    NaturalNumber4 swap = a;
+                    a = b;
+                    b = swap;
+                }
+                b.subtract(a);
+            }
+            a.shiftLeft(shift);
+            if (a != n) {
+                n.transferFrom(a);
+            }
+        }
+        m.clear();
+    }
 
-            } else {
-                reduceToGCD(m, remainder);
-                n.transferFrom(m);
+    /**
+     * Finds the greatest common divisor g of n and m, along with coefficients
+     * x and y such that #n * x - #m * y = g.
+     *
+     * @param n
+     *            one number
+     * @param m
+     *            the other number
+     * @param x
+     *            coefficient of #n
+     * @param y
+     *            coefficient of #m
+     * @updates n
+     * @clears m
+     * @replaces x, y
+     * @requires n > 0 and m > 0
+     * @ensures <pre>
+     * n = [greatest common divisor of #n and #m]  and
+     * #n * x = n + #m * y  and  0 < x <= #m / n
+     * </pre>
+     */
+    public static void extendedGCD(NaturalNumber n, NaturalNumber m,
+            NaturalNumber x, NaturalNumber y) {
+        assert !n.isZero() : "Violation of: n > 0";
+        assert !m.isZero() : "Violation of: m > 0";
 
+        NaturalNumber a = n.newInstance();
+        a.copyFrom(n);
+        /*
+         * The same Euclid loop as reduceToGCD, also keeping x with
+         * #n * x = n (mod #m); then y follows from x by one exact division
+         */
+        NaturalNumber quotient = n.newInstance();
+        quotient.copyFrom(n);
+        NaturalNumber r1 = quotient.divide(m);
+        NaturalNumber r0 = m.newInstance();
+        r0.copyFrom(m);
+        NaturalNumber x0 = n.newInstance();
+        NaturalNumber x1 = n.newInstance();
+        x1.setFromInt(1);
+        while (!r1.isZero()) {
+            NaturalNumber q = r0.newInstance();
+            q.copyFrom(r0);
+            NaturalNumber remainder = q.divide(r1);
+            r0.transferFrom(r1);
+            r1.transferFrom(remainder);
+            /*
+             * (x0, x1) becomes (x1, x0 - q * x1 mod #m), keeping both in
+             * [0, #m)
+             */
+            q.multiply(x1);
+            NaturalNumber qx1 = q.divide(m);
+            NaturalNumber next = x0.newInstance();
+            next.copyFrom(m);
+            next.add(x0);
+            next.subtract(qx1);
+            if (next.compareTo(m) >= 0) {
+                next.subtract(m);
             }
+            x0.transferFrom(x1);
+            x1.transferFrom(next);
+        }
+        /*
+         * r0 is the GCD; x is only determined modulo #m / r0, so take the
+         * representative in (0, #m / r0]
+         */
+        NaturalNumber period = m.newInstance();
+        period.copyFrom(m);
+        period.divide(r0);
+        NaturalNumber reduced = x0.divide(period);
+        x0.transferFrom(reduced);
+        if (x0.isZero()) {
+            x0.transferFrom(period);
         }
+        NaturalNumber product = a.newInstance();
+        product.copyFrom(a);
+        product.multiply(x0);
+        product.subtract(r0);
+        product.divide(m);
+        y.transferFrom(product);
+        x.transferFrom(x0);
+        n.transferFrom(r0);
+        m.clear();
+    }
 
+    /**
+     * Updates n to its inverse modulo m.
+     *
+     * @param n
+     *            number to be inverted
+     * @param m
+     *            the modulus
+     * @updates n
+     * @requires m > 1 and [greatest common divisor of n and m] = 1
+     * @ensures 0 < n < m and (#n * n) mod m = 1
+     */
+    public static void modInverse(NaturalNumber n, NaturalNumber m) {
+        assert m.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: m > 1";
+
+        NaturalNumber a = n.newInstance();
+        a.copyFrom(n);
+        NaturalNumber remainder = a.divide(m);
+        NaturalNumber copyM = m.newInstance();
+        copyM.copyFrom(m);
+        NaturalNumber y = n.newInstance();
+        extendedGCD(remainder, copyM, n, y);
+        assert remainder.compareTo(new NaturalNumber2(1)) == 0 : ""
+                + "Violation of: [greatest common divisor of n and m] = 1";
     }
 
     /**
@@ -147,18 +398,26 @@ public final class CryptoUtilities2 {
     public static boolean isEven(NaturalNumber n) {
 
         boolean isEven = false;
-        /*
-         * last digit of the NaturalNumber n is taken and modded by 2. if it
-         * evaluates to 0, then n is even. If not, then n is odd.
-         */
-        int lastDigit = n.divideBy10();
-        if (lastDigit % 2 == 0) {
-            isEven = true;
+        if (n instanceof NaturalNumber4) {
+            /*
+             * binary representation: parity is just the lowest bit, and n is
+             * not touched at all
+             */
+            isEven = ((NaturalNumber4) n).isEven();
+        } else {
+            /*
+             * last digit of the NaturalNumber n is taken and modded by 2. if
+             * it evaluates to 0, then n is even. If not, then n is odd.
+             */
+            int lastDigit = n.divideBy10();
+            if (lastDigit % 2 == 0) {
+                isEven = true;
+            }
+            /*
+             * n is restored
+             */
+            n.multiplyBy10(lastDigit);
         }
-        /*
-         * n is restored
-         */
-        n.multiplyBy10(lastDigit);
 
         return isEven;
     }
@@ -179,41 +438,35 @@ public final class CryptoUtilities2 {
     public static void powerMod(NaturalNumber n, NaturalNumber p,
             NaturalNumber m) {
         assert m.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: m > 1";
-        NaturalNumber one = n.newInstance();
-        one.setFromInt(1);
-        NaturalNumber two = n.newInstance();
-        two.setFromInt(2);
-        NaturalNumber originalN = n.newInstance();
-        originalN.copyFrom(n);
-        /*
-         * if p is zero, then n is set to 1 because anything powered to 0 is 1.
-         * else if p is bigger than 0, p is stored in p2 as a copy and p2 is
-         * divided by two. this way, p isn't changed so the code doesn't go
-         * against the default restores parameter. Method is recursively called
-         * with p2. n2 copies n to be used as n*n. if p is odd, then n is
-         * Multiplied by the original value of n.
-         */
-        if (p.isZero()) {
-            n.setFromInt(1);
-        } else if (p.compareTo(one) > 0) {
-            NaturalNumber p2 = p.newInstance();
-            p2.copyFrom(p);
-            p2.divide(two);
-            powerMod(n, p2, m);
-            NaturalNumber n2 = n.newInstance();
-            n2.copyFrom(n);
-            n.multiply(n2);
-            if (!isEven(p)) {
-                n.multiply(originalN);
+
+        long modulus = LongArithmetic.toLongIfFits(m);
+        long exponent = LongArithmetic.toLongIfFits(p);
+        if (modulus > 0 && exponent >= 0) {
+            /*
+             * m and p fit in a long, so the whole computation can be done on
+             * machine words; only n may need one reduction by m first
+             */
+            long base = LongArithmetic.toLongIfFits(n);
+            if (base < 0) {
+                base = LongArithmetic.toLongIfFits(n.divide(m));
             }
+            LongArithmetic.setFromLong(n,
+                    LongArithmetic.powerMod(base, exponent, modulus));
+        } else if (MontgomeryModulus.isApplicable(m)) {
+            /*
+             * m is coprime to 10, so the whole exponentiation can run in
+             * Montgomery form without any long division inside the loop
+             */
+            MontgomeryModulus context = new MontgomeryModulus(m);
+            context.power(n, p);
+        } else {
+            /*
+             * Left-to-right square-and-multiply over the bits of p, with
+             * Barrett reduction by m after every step instead of a division
+             */
+            ModulusContext context = new ModulusContext(m);
+            context.power(n, p);
         }
-        /*
-         * copyN is set up to be n mod m(returned value of n.divide(m)) and n
-         * copies that
-         */
-        NaturalNumber copyN = n.divide(m);
-        n.copyFrom(copyN);
-
     }
 
     /**
@@ -290,19 +543,56 @@ public final class CryptoUtilities2 {
     public static boolean isPrime1(NaturalNumber n) {
         assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
         boolean isPrime;
-        if (n.compareTo(new NaturalNumber2(THREE)) <= 0) {
+        long value = LongArithmetic.toLongIfFits(n);
+        if (value >= 0) {
+            /*
+             * n fits in a long, where an exact test is cheaper than the
+             * general one
+             */
+            isPrime = LongArithmetic.isPrime(value);
+        } else if (n.compareTo(new NaturalNumber2(THREE)) <= 0) {
 
             isPrime = true;
         } else if (isEven(n)) {
 
             isPrime = false;
+        } else if (!MontgomeryModulus.isApplicable(n)) {
+            /*
+             * n is an odd multiple of 5, and larger than 5
+             */
+            isPrime = false;
         } else {
-
-            isPrime = !isWitnessToCompositeness(new NaturalNumber2(2), n);
+            /*
+             * Fermat test with witness 2, i.e., whether 2^(n-1) mod n = 1;
+             * with base 2 every multiply step is just a doubling (the other
+             * half of isWitnessToCompositeness, 2^2 mod n = 1, cannot hold
+             * for n > 3)
+             */
+            MontgomeryModulus context = new MontgomeryModulus(n);
+            NaturalNumber nMinusOne = n.newInstance();
+            nMinusOne.copyFrom(n);
+            nMinusOne.decrement();
+            NaturalNumber power = n.newInstance();
+            context.powerOfTwoToMontgomery(power,
+                    MontgomeryModulus.bitsOf(nMinusOne));
+            context.fromMontgomery(power);
+            isPrime = power.compareTo(new NaturalNumber2(1)) == 0;
         }
         return isPrime;
     }
 
+    /**
+     * Installs cache as the cache of primality verdicts consulted by
+     * isPrime2, or removes the cache if cache is null. Caching is off until
+     * this is called; it only applies to numbers that do not fit in a long.
+     *
+     * @param cache
+     *            the cache, or null for none
+     */
+    public static void setPrimalityCache(PrimalityCache cache) {
+        primalityCache = cache;
+    }
+
     /**
      * Reports whether n is a prime; may be wrong with "low" probability.
      *
@@ -314,57 +604,187 @@ public final class CryptoUtilities2 {
      * @ensures <pre>
      * isPrime2 = [n is a prime number, with small probability of error
      *         if it is reported to be prime, and no chance of error if it is
-     *         reported to be composite]
+     *         reported to be composite; no chance of error at all if
+     *         n < 3317044064679887385961981]
      * </pre>
      */
     public static boolean isPrime2(NaturalNumber n) {
         assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
 
-        boolean isPrime = false;
-        if (n.compareTo(new NaturalNumber2(THREE)) <= 0) {
+        return isPrime2(n, NEVER);
+    }
+
+    /**
+     * Reports whether n is a prime, as isPrime2(n) would, unless the test is
+     * abandoned first: {@code abandoned} is checked before every
+     * Miller-Rabin round, and once it reports true the remaining rounds are
+     * skipped and false is returned. An abandoned verdict is not cached.
+     *
+     * @param n
+     *            number to be checked
+     * @param abandoned
+     *            reports whether the verdict is no longer needed
+     * @return isPrime2(n), or false if the test was abandoned
+     * @requires n > 1 and [abandoned, once true, stays true]
+     * @ensures <pre>
+     * isPrime2 = [isPrime2(n)] or
+     *   (not isPrime2 and [abandoned reported true])
+     * </pre>
+     */
+    static boolean isPrime2(NaturalNumber n, BooleanSupplier abandoned) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+        assert abandoned != null : "Violation of: abandoned is not null";
+
+        boolean isPrime = true;
+        long value = LongArithmetic.toLongIfFits(n);
+        if (value >= 0) {
+            /*
+             * n fits in a long: Miller-Rabin with seven fixed bases is exact
+             * there and runs on machine words
+             */
+            isPrime = LongArithmetic.isPrime(value);
+        } else if (n.compareTo(new NaturalNumber2(THREE)) <= 0) {
 
             isPrime = true;
         } else if (isEven(n)) {
 
             isPrime = false;
+        } else if (!MontgomeryModulus.isApplicable(n)) {
+            /*
+             * n is odd, so it is a multiple of 5
+             */
+            isPrime = n.compareTo(new NaturalNumber2(FIVE)) == 0;
         } else {
-
-            NaturalNumber copyN = n.newInstance();
-            copyN.copyFrom(n);
-            copyN.decrement();
-            NaturalNumber one = n.newInstance();
-            one.setFromInt(1);
             /*
-             * prevents checkstyle warning
+             * With a cache installed, a cached verdict skips the witness
+             * loop; otherwise the verdict is computed (and recorded)
              */
-            final int fifty = 50;
+            PrimalityCache cache = primalityCache;
+            Boolean cached = null;
+            if (cache != null) {
+                cached = cache.get(n);
+            }
+            if (cached != null) {
+                isPrime = cached;
+            } else {
+                isPrime = millerRabin(n, abandoned);
+                if (cache != null && !abandoned.getAsBoolean()) {
+                    cache.put(n, isPrime);
+                }
+            }
+        }
+
+        return isPrime;
+    }
+
+    /**
+     * Miller-Rabin test of isPrime2 for numbers that do not fit in a long:
+     * exact with fixed bases below DETERMINISTIC_BOUND, and with
+     * WITNESS_ROUNDS random witnesses above it. The rounds stop early, with
+     * false, once {@code abandoned} reports true.
+     *
+     * @param n
+     *            number to be checked
+     * @param abandoned
+     *            checked before every round
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite or the test was abandoned
+     * @requires n > 5 and [n is coprime to 10]
+     */
+    private static boolean millerRabin(NaturalNumber n,
+            BooleanSupplier abandoned) {
+        /*
+         * Miller-Rabin: n - 1 = d * 2^s is factored once and every witness
+         * reuses it, along with the Montgomery context for n
+         */
+        boolean isPrime = true;
+        MillerRabin test = new MillerRabin(n);
+        NaturalNumber nMinusOne = n.newInstance();
+        nMinusOne.copyFrom(n);
+        nMinusOne.decrement();
+        NaturalNumber one = n.newInstance();
+        one.setFromInt(1);
+        if (n.compareTo(new NaturalNumber2(DETERMINISTIC_BOUND)) < 0) {
             /*
-             * the amount of witness candidates generated is 50
+             * Fixed bases make the answer exact; bases that are not less
+             * than n - 1 only occur for tiny n and are skipped
              */
-            int witnessCanidateAmount = fifty;
+            int i = 0;
+            while (i < DETERMINISTIC_BASES.length && isPrime) {
+                isPrime = !abandoned.getAsBoolean();
+                NaturalNumber base = new NaturalNumber2(
+                        DETERMINISTIC_BASES[i]);
+                if (isPrime && base.compareTo(nMinusOne) < 0) {
+                    isPrime = !test.isWitness(base);
+                }
+                i++;
+            }
+        } else {
             /*
-             * while loop will continue indefinitely until isPrime is true or
-             * guessAmount reaches 0. guessAmount will decrement by 1 every
-             * loop.
+             * Random witnesses; candidates outside 1 < w < n - 1 are
+             * drawn but not tried
              */
-            while (witnessCanidateAmount >= 0 && !isPrime) {
-                NaturalNumber randomWitness = randomNumber(copyN);
-                /*
-                 * if randomWitness is in the interval 1<randomWitness<n-1, then
-                 * loop will check will make a check for isPrime by sending it
-                 * to the isWitnessToComposite method.
-                 */
-                if (randomWitness.compareTo(copyN) < 0
-                        && randomWitness.compareTo(one) > 0) {
-                    isPrime = !isWitnessToCompositeness(randomWitness, n);
+            int round = 0;
+            while (round < WITNESS_ROUNDS && isPrime) {
+                isPrime = !abandoned.getAsBoolean();
+                if (isPrime) {
+                    NaturalNumber randomWitness = randomNumber(nMinusOne);
+                    if (randomWitness.compareTo(nMinusOne) < 0
+                            && randomWitness.compareTo(one) > 0) {
+                        isPrime = !test.isWitness(randomWitness);
+                    }
                 }
-                witnessCanidateAmount--;
+                round++;
             }
         }
 
         return isPrime;
     }
 
+    /**
+     * Reports whether n is a prime, using the Baillie-PSW test: a strong
+     * probable prime test to base 2 followed by a strong Lucas probable prime
+     * test with Selfridge's parameters. This costs about as much as three
+     * modular exponentiations, against up to fifty for isPrime2, and no
+     * composite number is known to pass it.
+     *
+     * @param n
+     *            number to be checked
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1
+     * @ensures <pre>
+     * isPrime3 = [n is a prime number, with no known error if it is reported
+     *         to be prime, and no chance of error if it is reported to be
+     *         composite; no chance of error at all if n < 2^63]
+     * </pre>
+     */
+    public static boolean isPrime3(NaturalNumber n) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+
+        boolean isPrime;
+        long value = LongArithmetic.toLongIfFits(n);
+        if (value >= 0) {
+            /*
+             * n fits in a long, where the machine-word test is exact
+             */
+            isPrime = LongArithmetic.isPrime(value);
+        } else if (isEven(n)) {
+
+            isPrime = false;
+        } else if (!MontgomeryModulus.isApplicable(n)) {
+            /*
+             * n is odd and larger than 5, so it is a multiple of 5
+             */
+            isPrime = false;
+        } else {
+            MillerRabin test = new MillerRabin(n);
+            isPrime = !test.isWitness(new NaturalNumber2(2))
+                    && StrongLucas.isProbablePrime(n);
+        }
+        return isPrime;
+    }
+
     /**
      * Generates a likely prime number at least as large as some given number.
      *
@@ -372,44 +792,189 @@ public final class CryptoUtilities2 {
      *            minimum value of likely prime
      * @updates n
      * @requires n > 1
-     * @ensures n >= #n and [n is very likely a prime number]
+     * @ensures <pre>
+     * n >= #n and [n is very likely a prime number] and
+     * [n is the smallest number >= #n reported prime by isPrime2]
+     * </pre>
      */
     public static void generateNextLikelyPrime(NaturalNumber n) {
+        generateNextLikelyPrime(n, CryptoUtilities2::isPrime2);
+    }
+
+    /**
+     * Generates a likely prime number at least as large as some given number,
+     * according to the given primality test (e.g., {@code isPrime3} for the
+     * Baillie-PSW test).
+     *
+     * @param n
+     *            minimum value of likely prime
+     * @param isPrime
+     *            the primality test
+     * @updates n
+     * @requires n > 1 and [isPrime does not change its argument, and never
+     *           reports a prime to be composite]
+     * @ensures <pre>
+     * n >= #n and [n is very likely a prime number] and
+     * [n is the smallest number >= #n reported prime by isPrime]
+     * </pre>
+     */
+    public static void generateNextLikelyPrime(NaturalNumber n,
+            Predicate<NaturalNumber> isPrime) {
         assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
 
         /*
-         * Use isPrime2 to check numbers, starting at n and increasing through
-         * the odd numbers only, until n is likely prime
-         */
-        boolean isPrime = false;
-        /*
-         * increments n to next value assuming its not a prime
+         * Walk the candidates at or above n that survive the small-prime
+         * sieve, and run the test only on those, until one is likely prime
          */
-        n.increment();
-        /*
-         * as long as isPrime is NOT true, the loop will continue to find the
-         * next prime number. if n is even, then it will only increment once to
-         * produce an odd number. Other wise, it will increment twice to move on
-         * to the next odd number
-         */
-        while (!isPrime) {
-            if (isEven(n)) {
-                n.increment();
-            } else {
-                n.increment();
-                n.increment();
-            }
-            isPrime = isPrime2(n);
+        CandidateSieve candidates = new CandidateSieve(n);
+        boolean found = false;
+        while (!found) {
+            candidates.next(n);
+            found = isPrime.test(n);
         }
     }
 
     /**
-     * Main method.
+     * Generates a likely prime number at least as large as some given number,
+     * testing candidates concurrently on {@code parallelism} threads. The
+     * result is the same as that of {@code generateNextLikelyPrime(n)}.
+     *
+     * @param n
+     *            minimum value of likely prime
+     * @param parallelism
+     *            number of worker threads
+     * @updates n
+     * @requires n > 1 and parallelism > 0
+     * @ensures <pre>
+     * n >= #n and [n is very likely a prime number] and
+     * [n is the smallest number >= #n reported prime by isPrime2]
+     * </pre>
+     */
+    public static void generateNextLikelyPrime(NaturalNumber n,
+            int parallelism) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+        assert parallelism > 0 : "Violation of: parallelism > 0";
+
+        ParallelPrimeSearch.generateNextLikelyPrime(n, parallelism);
+    }
+
+    /**
+     * Reports which of the given numbers are prime, as isPrime2 would, using
+     * one worker thread per available processor.
+     *
+     * @param numbers
+     *            the numbers to be checked
+     * @return bit i is set iff the i-th number (in iteration order) is very
+     *         likely prime
+     * @requires [every number in numbers > 1]
+     * @ensures <pre>
+     * for all i: integer where (0 <= i < |numbers|)
+     *   (isPrimeBatch.get(i) = isPrime2([the i-th number in numbers]))
+     * </pre>
+     */
+    public static BitSet isPrimeBatch(
+            Collection<? extends NaturalNumber> numbers) {
+        return isPrimeBatch(numbers,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Reports which of the given numbers are prime, as isPrime2 would, testing
+     * them concurrently on {@code parallelism} threads. The numbers are not
+     * changed, and the small-prime table used for trial division is shared by
+     * the whole batch.
+     *
+     * @param numbers
+     *            the numbers to be checked
+     * @param parallelism
+     *            number of worker threads
+     * @return bit i is set iff the i-th number (in iteration order) is very
+     *         likely prime
+     * @requires [every number in numbers > 1] and parallelism > 0
+     * @ensures <pre>
+     * for all i: integer where (0 <= i < |numbers|)
+     *   (isPrimeBatch.get(i) = isPrime2([the i-th number in numbers]))
+     * </pre>
+     */
+    public static BitSet isPrimeBatch(
+            Collection<? extends NaturalNumber> numbers, int parallelism) {
+        assert parallelism > 0 : "Violation of: parallelism > 0";
+
+        return PrimalityBatch.isPrimeBatch(numbers, parallelism);
+    }
+
+    /**
+     * Returns the prime factors of n, with multiplicity, in increasing order.
+     * Small factors are found by trial division and the rest by Brent's
+     * variant of Pollard's rho method, with one reduceToGCD per batch of
+     * steps. The rho search is bounded, so a composite with two large prime
+     * factors may be returned unsplit; check entries with isPrime2 if that
+     * matters.
+     *
+     * @param n
+     *            the number to be factored
+     * @return the factors of n
+     * @requires n > 1
+     * @ensures <pre>
+     * [the product of the entries of factor is n]  and
+     * [the entries of factor are in increasing order]  and
+     * [each entry is a likely prime according to isPrime2, or a composite
+     *  that the bounded rho search could not split]
+     * </pre>
+     */
+    public static List<NaturalNumber> factor(NaturalNumber n) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+
+        return Factorization.factor(n);
+    }
+
+    /**
+     * Main method. With no arguments, runs interactively. With arguments
+     * {@code input [output]}, runs in batch mode instead: every line of the
+     * file input is tested with isPrime2 on one thread per available
+     * processor, one verdict line per input line ("n prime", "n composite" or
+     * "line invalid") is written, in input order, to the file output (or to
+     * the console), and the throughput is reported on the console.
      *
      * @param args
      *            the command line arguments
      */
     public static void main(String[] args) {
+        if (args.length > 0) {
+            batch(args);
+        } else {
+            interactive();
+        }
+    }
+
+    /**
+     * Batch mode of main.
+     *
+     * @param args
+     *            the command line arguments: input file, then optionally
+     *            output file
+     * @requires args.length > 0
+     */
+    private static void batch(String[] args) {
+        SimpleReader in = new SimpleReader1L(args[0]);
+        SimpleWriter report = new SimpleWriter1L();
+        SimpleWriter out = report;
+        if (args.length > 1) {
+            out = new SimpleWriter1L(args[1]);
+        }
+        PrimalityFileBatch.run(in, out, report, new NaturalNumber4(),
+                Runtime.getRuntime().availableProcessors());
+        in.close();
+        if (out != report) {
+            out.close();
+        }
+        report.close();
+    }
+
+    /**
+     * Interactive mode of main.
+     */
+    private static void interactive() {
         SimpleReader in = new SimpleReader1L();
         SimpleWriter out = new SimpleWriter1L();
 
@@ -459,6 +1024,17 @@ public final class CryptoUtilities2 {
                 } else {
                     out.println(n + " is a composite number"
                             + " according to isPrime2.");
+                    StringBuilder factors = new StringBuilder();
+                    for (NaturalNumber factor : factor(n)) {
+                        if (factors.length() > 0) {
+                            factors.append(" * ");
+                        }
+                        factors.append(factor);
+                        if (!isPrime2(factor)) {
+                            factors.append(" (composite)");
+                        }
+                    }
+                    out.println("  " + n + " = " + factors);
                     generateNextLikelyPrime(n);
                     out.println("  next likely prime is " + n);
                 }
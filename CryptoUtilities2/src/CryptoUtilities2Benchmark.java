@@ -0,0 +1,433 @@
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.sun.management.ThreadMXBean;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Benchmark driver for {@code CryptoUtilities2} at key-like sizes. For every
+ * operation and bit size it runs warm-up iterations, then timed iterations,
+ * and reports throughput (operations per second), time per operation, and
+ * bytes allocated per operation on the benchmarking thread (from
+ * {@code com.sun.management.ThreadMXBean}, the same counter the JMH GC
+ * profiler reads).
+ *
+ * <p>
+ * Arguments, all optional: {@code impl=2|4} picks NaturalNumber2 or
+ * NaturalNumber4 (default 4); {@code bits=64,256,...} picks the sizes
+ * (default 64,256,512,1024,2048); {@code bench=powerMod,isPrime2,...} picks
+ * the operations (default all); {@code time=ms} sets the length of one
+ * iteration (default 1000).
+ * </p>
+ *
+ * <p>
+ * Every operation works on fresh copies of its inputs, since the methods
+ * being measured update their arguments; the copies are included in the
+ * measurement, but they are linear-time and small next to the operations.
+ * </p>
+ *
+ * @author Ayman Abumaike
+ *
+ */
+public final class CryptoUtilities2Benchmark {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private CryptoUtilities2Benchmark() {
+    }
+
+    /**
+     * Default bit sizes.
+     */
+    private static final int[] DEFAULT_BITS = { 64, 256, 512, 1024, 2048 };
+
+    /**
+     * Default length of one iteration, in milliseconds.
+     */
+    private static final long DEFAULT_ITERATION_MILLIS = 1000;
+
+    /**
+     * Number of warm-up iterations.
+     */
+    private static final int WARMUP_ITERATIONS = 2;
+
+    /**
+     * Number of measured iterations.
+     */
+    private static final int MEASURED_ITERATIONS = 3;
+
+    /**
+     * Seed of the input generator, so runs are comparable.
+     */
+    private static final long SEED = 20240101L;
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Nanoseconds per second, as a double.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Value folded from every result, so the JIT cannot drop the work.
+     */
+    private static volatile long sink;
+
+    /**
+     * One operation under measurement.
+     */
+    private interface Operation {
+
+        /**
+         * Runs the operation once on fresh copies of the inputs.
+         *
+         * @param inputs
+         *            the inputs for this bit size
+         * @return a value depending on the result
+         */
+        long run(Inputs inputs);
+
+    }
+
+    /**
+     * Inputs for one bit size. None of them is ever updated; operations copy
+     * what they change.
+     */
+    private static final class Inputs {
+
+        /**
+         * A random odd number of the given size.
+         */
+        private final NaturalNumber number;
+
+        /**
+         * Another random odd number of the given size, used as a modulus.
+         */
+        private final NaturalNumber modulus;
+
+        /**
+         * A random exponent of the given size.
+         */
+        private final NaturalNumber exponent;
+
+        /**
+         * A prime of the given size (the slowest case for primality tests).
+         */
+        private final NaturalNumber prime;
+
+        /**
+         * An RSA key whose modulus has the given size.
+         */
+        private final RSAKey key;
+
+        /**
+         * A random number below the modulus of key.
+         */
+        private final NaturalNumber ciphertext;
+
+        /**
+         * Constructor.
+         *
+         * @param bits
+         *            size of the inputs
+         * @param prototype
+         *            number whose implementation the inputs use
+         * @param random
+         *            source of the inputs
+         */
+        Inputs(int bits, NaturalNumber prototype, Random random) {
+            this.number = make(prototype,
+                    new BigInteger(bits, random).setBit(bits - 1).setBit(0));
+            this.modulus = make(prototype,
+                    new BigInteger(bits, random).setBit(bits - 1).setBit(0));
+            this.exponent = make(prototype,
+                    new BigInteger(bits, random).setBit(bits - 1));
+            this.prime = make(prototype,
+                    BigInteger.probablePrime(bits, random));
+            BigInteger e = BigInteger.valueOf(RSAKey.PUBLIC_EXPONENT);
+            BigInteger[] factors = new BigInteger[2];
+            for (int i = 0; i < factors.length; i++) {
+                do {
+                    factors[i] = BigInteger.probablePrime(bits / 2, random);
+                } while (factors[i].mod(e).equals(BigInteger.ONE)
+                        || i > 0 && factors[i].equals(factors[0]));
+            }
+            this.key = RSAKey.fromPrimes(make(prototype, factors[0]),
+                    make(prototype, factors[1]));
+            this.ciphertext = make(prototype, new BigInteger(bits, random)
+                    .mod(factors[0].multiply(factors[1])));
+        }
+
+        /**
+         * Returns a new number of the same implementation as prototype with
+         * value v.
+         *
+         * @param prototype
+         *            number whose implementation is used
+         * @param v
+         *            the value
+         * @return the new number
+         */
+        private static NaturalNumber make(NaturalNumber prototype,
+                BigInteger v) {
+            NaturalNumber result = prototype.newInstance();
+            result.copyFrom(new NaturalNumber2(v.toString()));
+            return result;
+        }
+
+        /**
+         * Returns a fresh copy of n.
+         *
+         * @param n
+         *            the number
+         * @return a copy of n
+         */
+        static NaturalNumber copy(NaturalNumber n) {
+            NaturalNumber result = n.newInstance();
+            result.copyFrom(n);
+            return result;
+        }
+
+    }
+
+    /**
+     * The operations under measurement, in report order.
+     */
+    private enum Benchmark {
+
+        /**
+         * randomNumber on the random number.
+         */
+        RANDOM_NUMBER("randomNumber", (in) -> CryptoUtilities2
+                .randomNumber(Inputs.copy(in.number)).hashCode()),
+
+        /**
+         * reduceToGCD of the random number and the modulus.
+         */
+        REDUCE_TO_GCD("reduceToGCD", (in) -> {
+            NaturalNumber n = Inputs.copy(in.number);
+            CryptoUtilities2.reduceToGCD(n, Inputs.copy(in.modulus));
+            return n.hashCode();
+        }),
+
+        /**
+         * powerMod of the random number, exponent and modulus.
+         */
+        POWER_MOD("powerMod", (in) -> {
+            NaturalNumber n = Inputs.copy(in.number);
+            CryptoUtilities2.powerMod(n, in.exponent, Inputs.copy(in.modulus));
+            return n.hashCode();
+        }),
+
+        /**
+         * isWitnessToCompositeness of 2 for the prime.
+         */
+        IS_WITNESS_TO_COMPOSITENESS("isWitnessToCompositeness", (in) -> {
+            NaturalNumber w = in.prime.newInstance();
+            w.setFromInt(2);
+            return CryptoUtilities2.isWitnessToCompositeness(w,
+                    Inputs.copy(in.prime)) ? 1 : 0;
+        }),
+
+        /**
+         * isPrime1 of the prime.
+         */
+        IS_PRIME1("isPrime1", (in) -> CryptoUtilities2
+                .isPrime1(Inputs.copy(in.prime)) ? 1 : 0),
+
+        /**
+         * isPrime2 of the prime.
+         */
+        IS_PRIME2("isPrime2", (in) -> CryptoUtilities2
+                .isPrime2(Inputs.copy(in.prime)) ? 1 : 0),
+
+        /**
+         * isPrime3 (Baillie-PSW) of the prime.
+         */
+        IS_PRIME3("isPrime3", (in) -> CryptoUtilities2
+                .isPrime3(Inputs.copy(in.prime)) ? 1 : 0),
+
+        /**
+         * generateNextLikelyPrime from the random number.
+         */
+        GENERATE_NEXT_LIKELY_PRIME("generateNextLikelyPrime", (in) -> {
+            NaturalNumber n = Inputs.copy(in.number);
+            CryptoUtilities2.generateNextLikelyPrime(n);
+            return n.hashCode();
+        }),
+
+        /**
+         * RSA private-key operation on the ciphertext, with the CRT.
+         */
+        RSA_DECRYPT("rsaDecrypt", (in) -> {
+            NaturalNumber c = Inputs.copy(in.ciphertext);
+            in.key.decrypt(c);
+            return c.hashCode();
+        }),
+
+        /**
+         * The same operation as one powerMod modulo n, for comparison.
+         */
+        RSA_DECRYPT_WITHOUT_CRT("rsaDecryptWithoutCrt", (in) -> {
+            NaturalNumber c = Inputs.copy(in.ciphertext);
+            CryptoUtilities2.powerMod(c, in.key.privateExponent(),
+                    in.key.modulus());
+            return c.hashCode();
+        });
+
+        /**
+         * Name used in arguments and in the report.
+         */
+        private final String label;
+
+        /**
+         * The operation.
+         */
+        private final Operation operation;
+
+        /**
+         * Constructor.
+         *
+         * @param label
+         *            name used in arguments and in the report
+         * @param operation
+         *            the operation
+         */
+        Benchmark(String label, Operation operation) {
+            this.label = label;
+            this.operation = operation;
+        }
+
+    }
+
+    /**
+     * Runs op repeatedly for about the given time and returns {operations,
+     * elapsed nanoseconds, allocated bytes}.
+     *
+     * @param op
+     *            the operation
+     * @param inputs
+     *            its inputs
+     * @param millis
+     *            length of the iteration
+     * @return operation count, elapsed time and allocation of the iteration
+     */
+    private static long[] iteration(Operation op, Inputs inputs, long millis) {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long budget = millis * NANOS_PER_MILLI;
+        long folded = 0;
+        long count = 0;
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        long elapsed = 0;
+        /*
+         * At least one operation, however long it takes
+         */
+        while (count == 0 || elapsed < budget) {
+            folded += op.run(inputs);
+            count++;
+            elapsed = System.nanoTime() - start;
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes()
+                - allocatedBefore;
+        sink += folded;
+        return new long[] { count, elapsed, allocated };
+    }
+
+    /**
+     * Returns the comma-separated value of option {@code name=...} in args,
+     * or null if it is absent.
+     *
+     * @param args
+     *            the command line arguments
+     * @param name
+     *            the option name
+     * @return the option value, or null
+     */
+    private static String option(String[] args, String name) {
+        String result = null;
+        for (String arg : args) {
+            if (arg.startsWith(name + "=")) {
+                result = arg.substring(name.length() + 1);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+
+        NaturalNumber prototype = new NaturalNumber4();
+        if ("2".equals(option(args, "impl"))) {
+            prototype = new NaturalNumber2();
+        }
+        int[] sizes = DEFAULT_BITS;
+        String bitsOption = option(args, "bits");
+        if (bitsOption != null) {
+            sizes = Arrays.stream(bitsOption.split(","))
+                    .mapToInt(Integer::parseInt).toArray();
+        }
+        List<String> selected = null;
+        String benchOption = option(args, "bench");
+        if (benchOption != null) {
+            selected = Arrays.asList(benchOption.split(","));
+        }
+        long millis = DEFAULT_ITERATION_MILLIS;
+        String timeOption = option(args, "time");
+        if (timeOption != null) {
+            millis = Long.parseLong(timeOption);
+        }
+
+        out.println("implementation: " + prototype.getClass().getSimpleName());
+        out.println(String.format("%-26s %6s %14s %14s %16s", "benchmark",
+                "bits", "ops/s", "ms/op", "B/op"));
+        Random random = new Random(SEED);
+        for (int bits : sizes) {
+            Inputs inputs = new Inputs(bits, prototype, random);
+            for (Benchmark benchmark : Benchmark.values()) {
+                String name = benchmark.label;
+                Operation op = benchmark.operation;
+                if (selected == null || selected.contains(name)) {
+                    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                        iteration(op, inputs, millis);
+                    }
+                    long count = 0;
+                    long elapsed = 0;
+                    long allocated = 0;
+                    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                        long[] result = iteration(op, inputs, millis);
+                        count += result[0];
+                        elapsed += result[1];
+                        allocated += result[2];
+                    }
+                    double seconds = elapsed / NANOS_PER_SECOND;
+                    out.println(String.format("%-26s %6d %14.3f %14.6f %16d",
+                            name, bits, count / seconds,
+                            (double) elapsed / count / NANOS_PER_MILLI,
+                            allocated / count));
+                }
+            }
+        }
+
+        out.close();
+    }
+
+}
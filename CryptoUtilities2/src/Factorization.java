@@ -0,0 +1,341 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Prime factorization by trial division followed by Brent's variant of
+ * Pollard's rho method. The differences of a whole batch of rho steps are
+ * multiplied together modulo n, so one GCD is taken per batch instead of one
+ * per step. Cofactors that fit in a {@code long} are split by
+ * {@code LongArithmetic}, and cofactors below 2^126 (38 digits) by
+ * {@code TwoWordArithmetic}, both on machine words; larger cofactors use
+ * {@code NaturalNumber4} arithmetic, about ten times slower per step.
+ *
+ * <p>
+ * The search for each split is bounded (to about a second), so a hard
+ * composite is returned unsplit rather than blocking the caller. Rho needs
+ * about sqrt(p) steps to find a prime factor p, so the bound is set by the
+ * second largest prime factor: in practice, products of two primes of equal
+ * size are split up to about 28 digits, about half the time at 30 digits,
+ * and rarely beyond; any number whose second largest prime factor has at most
+ * about 14 digits is split completely.
+ * </p>
+ *
+ * @author Ayman Abumaike
+ *
+ */
+final class Factorization {
+
+    /**
+     * Number of odd primes used for trial division (all those below 17,863).
+     */
+    private static final int TRIAL_PRIME_COUNT = 2048;
+
+    /**
+     * Odd primes used for trial division.
+     */
+    private static final int[] TRIAL_PRIMES = CandidateSieve
+            .smallPrimes(TRIAL_PRIME_COUNT);
+
+    /**
+     * Rho steps whose differences share one GCD.
+     */
+    private static final int BATCH = 128;
+
+    /**
+     * Iteration constants tried before a cofactor is given up on; another
+     * constant is only tried after the iteration cycled without a split.
+     */
+    private static final int ATTEMPTS = 4;
+
+    /**
+     * Rho steps allowed for a cofactor between 2^63 and 2^126, on two-word
+     * arithmetic.
+     */
+    private static final long MAX_TWO_WORD_STEPS = 1L << 23;
+
+    /**
+     * Rho steps allowed for a cofactor of 2^126 or more (about a second).
+     */
+    private static final long MAX_STEPS = 1L << 20;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Factorization() {
+    }
+
+    /**
+     * Returns the prime factors of n, with multiplicity, in increasing order.
+     *
+     * @param n
+     *            the number to be factored
+     * @return the factors of n
+     * @requires n > 1
+     * @ensures <pre>
+     * [the product of the entries of factor is n]  and
+     * [the entries of factor are in increasing order]  and
+     * [each entry is a likely prime according to isPrime2, or a composite
+     *  that the bounded rho search could not split]
+     * </pre>
+     * <p>
+     * Every factorization is complete when the second largest prime factor
+     * of n has at most about 14 digits (e.g., any n with at most 28 digits
+     * whose two largest factors have equal size). Beyond that an entry may be
+     * an unsplit composite: about half of the 30-digit products of two
+     * 15-digit primes, and most products of two larger primes, come back
+     * whole after about a second.
+     * </p>
+     */
+    static List<NaturalNumber> factor(NaturalNumber n) {
+        List<NaturalNumber> factors = new ArrayList<>();
+        NaturalNumber rest = n.newInstance();
+        rest.copyFrom(n);
+        divideOut(rest, 2, factors);
+        int[] residues = CandidateSieve.residues(rest, TRIAL_PRIMES);
+        for (int i = 0; i < TRIAL_PRIMES.length; i++) {
+            if (residues[i] == 0) {
+                divideOut(rest, TRIAL_PRIMES[i], factors);
+            }
+        }
+        List<NaturalNumber> pending = new ArrayList<>();
+        if (rest.compareTo(one(rest)) > 0) {
+            pending.add(rest);
+        }
+        while (!pending.isEmpty()) {
+            NaturalNumber m = pending.remove(pending.size() - 1);
+            if (CryptoUtilities2.isPrime2(m)) {
+                factors.add(m);
+            } else {
+                NaturalNumber d = split(m);
+                if (d == null) {
+                    factors.add(m);
+                } else {
+                    /*
+                     * m becomes m / d; both parts go back on the list
+                     */
+                    m.divide(d);
+                    pending.add(m);
+                    pending.add(d);
+                }
+            }
+        }
+        factors.sort(NaturalNumber::compareTo);
+        return factors;
+    }
+
+    /**
+     * Returns a new number equal to 1, of the same implementation as n.
+     *
+     * @param n
+     *            the number whose implementation is used
+     * @return 1
+     */
+    private static NaturalNumber one(NaturalNumber n) {
+        NaturalNumber result = n.newInstance();
+        result.setFromInt(1);
+        return result;
+    }
+
+    /**
+     * Divides every factor p out of n, adding one entry to factors for each.
+     *
+     * @param n
+     *            the number
+     * @param p
+     *            a prime
+     * @param factors
+     *            the factors found so far
+     * @updates n, factors
+     * @ensures <pre>
+     * #n = n * p^k  and  n mod p /= 0  and
+     * factors = #factors * [k copies of p]
+     * </pre>
+     */
+    private static void divideOut(NaturalNumber n, int p,
+            List<NaturalNumber> factors) {
+        NaturalNumber prime = n.newInstance();
+        prime.setFromInt(p);
+        boolean divides = !n.isZero();
+        while (divides) {
+            NaturalNumber quotient = n.newInstance();
+            quotient.copyFrom(n);
+            NaturalNumber remainder = quotient.divide(prime);
+            divides = remainder.isZero();
+            if (divides) {
+                n.transferFrom(quotient);
+                NaturalNumber factor = n.newInstance();
+                factor.setFromInt(p);
+                factors.add(factor);
+            }
+        }
+    }
+
+    /**
+     * Looks for a nontrivial divisor of the composite m.
+     *
+     * @param m
+     *            the number to be split
+     * @return a divisor d of m with 1 < d < m, or null if none was found
+     *         within the search bound
+     * @requires [m is composite and has no prime factor below 17,863]
+     */
+    private static NaturalNumber split(NaturalNumber m) {
+        NaturalNumber result = null;
+        long value = LongArithmetic.toLongIfFits(m);
+        NaturalNumber4 wide = new NaturalNumber4(m);
+        boolean cycled = true;
+        int c = 1;
+        while (cycled && c <= ATTEMPTS) {
+            NaturalNumber d;
+            if (value >= 0) {
+                d = m.newInstance();
+                LongArithmetic.setFromLong(d,
+                        LongArithmetic.pollardBrent(value, c, BATCH));
+            } else if (wide.bitLength() <= TwoWordArithmetic.MAX_BITS) {
+                NaturalNumber4 w = TwoWordArithmetic.pollardBrent(wide, c,
+                        BATCH, MAX_TWO_WORD_STEPS);
+                d = null;
+                if (w != null) {
+                    d = m.newInstance();
+                    d.copyFrom(w);
+                }
+            } else {
+                d = pollardBrent(m, c);
+            }
+            cycled = d != null && d.compareTo(m) == 0;
+            if (d != null && !cycled) {
+                result = d;
+            }
+            c++;
+        }
+        return result;
+    }
+
+    /**
+     * Brent's variant of Pollard's rho method on m, with the iteration
+     * x -> x^2 + c. The arithmetic is done on a NaturalNumber4 copy of m
+     * with Barrett reduction, whose shifts are binary, whatever the
+     * implementation of m.
+     *
+     * @param m
+     *            the number to be split
+     * @param c
+     *            the constant of the iteration
+     * @return a divisor d of m with 1 < d, where d = m means the iteration
+     *         cycled without splitting m; or null if nothing was found within
+     *         MAX_STEPS steps
+     * @requires [m is composite] and 0 < c < m
+     */
+    private static NaturalNumber pollardBrent(NaturalNumber m, int c) {
+        NaturalNumber4 modulus = new NaturalNumber4(m);
+        ModulusContext context = new ModulusContext(modulus);
+        NaturalNumber4 constant = new NaturalNumber4(c);
+        NaturalNumber4 y = new NaturalNumber4(2);
+        NaturalNumber4 x = new NaturalNumber4();
+        NaturalNumber4 ys = new NaturalNumber4();
+        NaturalNumber4 q = new NaturalNumber4(1);
+        NaturalNumber4 unit = new NaturalNumber4(1);
+        NaturalNumber g = unit;
+        long steps = 0;
+        long r = 1;
+        while (g.compareTo(unit) == 0 && steps < MAX_STEPS) {
+            x.copyFrom(y);
+            for (long i = 0; i < r; i++) {
+                step(context, y, constant, modulus);
+            }
+            long k = 0;
+            while (k < r && g.compareTo(unit) == 0) {
+                ys.copyFrom(y);
+                long batch = Math.min(BATCH, r - k);
+                for (long i = 0; i < batch; i++) {
+                    step(context, y, constant, modulus);
+                    context.mulMod(q, difference(x, y));
+                }
+                g = gcd(q, modulus);
+                k += BATCH;
+            }
+            steps += 2 * r;
+            r *= 2;
+        }
+        if (g.compareTo(modulus) == 0) {
+            /*
+             * The batch overshot; redo its steps one GCD at a time
+             */
+            do {
+                step(context, ys, constant, modulus);
+                g = gcd(difference(x, ys), modulus);
+            } while (g.compareTo(unit) == 0);
+        }
+        NaturalNumber result = null;
+        if (g.compareTo(unit) != 0) {
+            result = m.newInstance();
+            result.copyFrom(g);
+        }
+        return result;
+    }
+
+    /**
+     * One step of the rho iteration: y becomes y^2 + c mod m.
+     *
+     * @param context
+     *            Barrett context for m
+     * @param y
+     *            current value
+     * @param c
+     *            the constant
+     * @param m
+     *            the modulus
+     * @updates y
+     * @requires y < m and c < m
+     */
+    private static void step(ModulusContext context, NaturalNumber y,
+            NaturalNumber c, NaturalNumber m) {
+        context.sqrMod(y);
+        y.add(c);
+        if (y.compareTo(m) >= 0) {
+            y.subtract(m);
+        }
+    }
+
+    /**
+     * Returns |a - b| as a new number.
+     *
+     * @param a
+     *            one number
+     * @param b
+     *            the other number
+     * @return |a - b|
+     */
+    private static NaturalNumber difference(NaturalNumber a, NaturalNumber b) {
+        NaturalNumber result = a.newInstance();
+        if (a.compareTo(b) >= 0) {
+            result.copyFrom(a);
+            result.subtract(b);
+        } else {
+            result.copyFrom(b);
+            result.subtract(a);
+        }
+        return result;
+    }
+
+    /**
+     * Returns gcd(a, m) as a new number, using reduceToGCD.
+     *
+     * @param a
+     *            one number
+     * @param m
+     *            the other number
+     * @return gcd(a, m)
+     */
+    private static NaturalNumber gcd(NaturalNumber a, NaturalNumber m) {
+        NaturalNumber result = a.newInstance();
+        result.copyFrom(a);
+        NaturalNumber copyM = m.newInstance();
+        copyM.copyFrom(m);
+        CryptoUtilities2.reduceToGCD(result, copyM);
+        return result;
+    }
+
+}
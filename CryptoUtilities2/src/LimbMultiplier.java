@@ -0,0 +1,630 @@
+import java.util.Arrays;
+
+/**
+ * Multiplication of base-2^32 limb arrays (least significant limb first) for
+ * {@code NaturalNumber4}. Small operands use schoolbook multiplication, larger
+ * ones Karatsuba, and the largest Toom-3; squaring has its own path at every
+ * level, since it needs roughly half the limb products. The thresholds are in
+ * limbs and are the ones {@code java.math.BigInteger} uses, which were tuned
+ * for the same int[] representation.
+ *
+ * @author Ayman Abumaike
+ *
+ */
+final class LimbMultiplier {
+
+    /**
+     * Mask that turns an int limb into its unsigned value.
+     */
+    private static final long MASK = 0xFFFFFFFFL;
+
+    /**
+     * Bits per limb.
+     */
+    private static final int LIMB_BITS = 32;
+
+    /**
+     * Operands with fewer limbs than this use schoolbook multiplication.
+     */
+    static final int KARATSUBA_THRESHOLD = 80;
+
+    /**
+     * Operands with at least this many limbs use Toom-3.
+     */
+    static final int TOOM_THRESHOLD = 240;
+
+    /**
+     * Squaring thresholds corresponding to KARATSUBA_THRESHOLD.
+     */
+    static final int KARATSUBA_SQUARE_THRESHOLD = 128;
+
+    /**
+     * Squaring thresholds corresponding to TOOM_THRESHOLD.
+     */
+    static final int TOOM_SQUARE_THRESHOLD = 216;
+
+    /**
+     * Useful constant, not a magic number: 3.
+     */
+    private static final int THREE = 3;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private LimbMultiplier() {
+    }
+
+    /**
+     * Returns the product of the first {@code aLength} limbs of a and the
+     * first {@code bLength} limbs of b.
+     *
+     * @param a
+     *            first factor
+     * @param aLength
+     *            limbs of a in use
+     * @param b
+     *            second factor
+     * @param bLength
+     *            limbs of b in use
+     * @return a * b, in aLength + bLength limbs
+     */
+    static int[] multiply(int[] a, int aLength, int[] b, int bLength) {
+        int[] product;
+        if (Math.min(aLength, bLength) < KARATSUBA_THRESHOLD) {
+            product = schoolbook(a, aLength, b, bLength);
+        } else {
+            product = Arrays.copyOf(multiply(Arrays.copyOf(a, aLength),
+                    Arrays.copyOf(b, bLength)), aLength + bLength);
+        }
+        return product;
+    }
+
+    /**
+     * Returns the square of the first {@code aLength} limbs of a.
+     *
+     * @param a
+     *            the number to square
+     * @param aLength
+     *            limbs of a in use
+     * @return a * a, in 2 * aLength limbs
+     */
+    static int[] square(int[] a, int aLength) {
+        int[] product;
+        if (aLength < KARATSUBA_SQUARE_THRESHOLD) {
+            product = schoolbookSquare(a, aLength);
+        } else {
+            product = Arrays.copyOf(square(Arrays.copyOf(a, aLength)),
+                    2 * aLength);
+        }
+        return product;
+    }
+
+    /**
+     * Returns the product of a and b.
+     *
+     * @param a
+     *            first factor
+     * @param b
+     *            second factor
+     * @return a * b, in at least a.length + b.length limbs
+     */
+    private static int[] multiply(int[] a, int[] b) {
+        int[] x = trim(a);
+        int[] y = trim(b);
+        int shorter = Math.min(x.length, y.length);
+        int[] product;
+        if (shorter < KARATSUBA_THRESHOLD) {
+            product = schoolbook(x, x.length, y, y.length);
+        } else if (shorter < TOOM_THRESHOLD) {
+            product = karatsuba(x, y, false);
+        } else {
+            product = toom3(x, y, false);
+        }
+        return product;
+    }
+
+    /**
+     * Returns the square of a.
+     *
+     * @param a
+     *            the number to square
+     * @return a * a, in at least 2 * a.length limbs
+     */
+    private static int[] square(int[] a) {
+        int[] x = trim(a);
+        int[] product;
+        if (x.length < KARATSUBA_SQUARE_THRESHOLD) {
+            product = schoolbookSquare(x, x.length);
+        } else if (x.length < TOOM_SQUARE_THRESHOLD) {
+            product = karatsuba(x, x, true);
+        } else {
+            product = toom3(x, x, true);
+        }
+        return product;
+    }
+
+    /**
+     * Multiplies (or squares, when {@code squaring}) by recursing back into
+     * the size dispatch.
+     *
+     * @param a
+     *            first factor
+     * @param b
+     *            second factor (same value as a when squaring)
+     * @param squaring
+     *            whether a and b are the same number
+     * @return a * b
+     */
+    private static int[] recurse(int[] a, int[] b, boolean squaring) {
+        int[] product;
+        if (squaring) {
+            product = square(a);
+        } else {
+            product = multiply(a, b);
+        }
+        return product;
+    }
+
+    /**
+     * Schoolbook multiplication.
+     *
+     * @param a
+     *            first factor
+     * @param aLength
+     *            limbs of a in use
+     * @param b
+     *            second factor
+     * @param bLength
+     *            limbs of b in use
+     * @return a * b, in aLength + bLength limbs
+     */
+    private static int[] schoolbook(int[] a, int aLength, int[] b,
+            int bLength) {
+        int[] product = new int[aLength + bLength];
+        for (int i = 0; i < aLength; i++) {
+            long ai = a[i] & MASK;
+            long carry = 0;
+            for (int j = 0; j < bLength; j++) {
+                long t = ai * (b[j] & MASK) + (product[i + j] & MASK) + carry;
+                product[i + j] = (int) t;
+                carry = t >>> LIMB_BITS;
+            }
+            product[i + bLength] = (int) carry;
+        }
+        return product;
+    }
+
+    /**
+     * Schoolbook squaring: each cross product a[i] * a[j] (i < j) is computed
+     * once and doubled, then the squares a[i]^2 are added in.
+     *
+     * @param a
+     *            the number to square
+     * @param n
+     *            limbs of a in use
+     * @return a * a, in 2 * n limbs
+     */
+    private static int[] schoolbookSquare(int[] a, int n) {
+        int[] product = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            long ai = a[i] & MASK;
+            long carry = 0;
+            for (int j = i + 1; j < n; j++) {
+                long t = ai * (a[j] & MASK) + (product[i + j] & MASK) + carry;
+                product[i + j] = (int) t;
+                carry = t >>> LIMB_BITS;
+            }
+            product[i + n] = (int) carry;
+        }
+        /*
+         * Double the cross products, then add the diagonal
+         */
+        int overflow = 0;
+        for (int i = 0; i < 2 * n; i++) {
+            int limb = product[i];
+            product[i] = (limb << 1) | overflow;
+            overflow = limb >>> (LIMB_BITS - 1);
+        }
+        long carry = 0;
+        for (int i = 0; i < n; i++) {
+            long ai = a[i] & MASK;
+            long sq = ai * ai;
+            long t = (product[2 * i] & MASK) + (sq & MASK) + carry;
+            product[2 * i] = (int) t;
+            t = (product[2 * i + 1] & MASK) + (sq >>> LIMB_BITS)
+                    + (t >>> LIMB_BITS);
+            product[2 * i + 1] = (int) t;
+            carry = t >>> LIMB_BITS;
+        }
+        return product;
+    }
+
+    /**
+     * Karatsuba multiplication: with a = a1 * B + a0 and b = b1 * B + b0,
+     * a * b = z2 * B^2 + z1 * B + z0 where z0 = a0 * b0, z2 = a1 * b1, and
+     * z1 = (a0 + a1)(b0 + b1) - z0 - z2, so three half-size products replace
+     * four.
+     *
+     * @param a
+     *            first factor
+     * @param b
+     *            second factor
+     * @param squaring
+     *            whether a and b are the same number
+     * @return a * b
+     */
+    private static int[] karatsuba(int[] a, int[] b, boolean squaring) {
+        int half = (Math.max(a.length, b.length) + 1) / 2;
+        int[] a0 = slice(a, 0, half);
+        int[] a1 = slice(a, half, a.length);
+        int[] b0 = slice(b, 0, half);
+        int[] b1 = slice(b, half, b.length);
+
+        int[] z0 = recurse(a0, b0, squaring);
+        int[] z2 = recurse(a1, b1, squaring);
+        int[] z1 = recurse(add(a0, a1), add(b0, b1), squaring);
+        subtractInPlace(z1, z0);
+        subtractInPlace(z1, z2);
+
+        int[] product = new int[a.length + b.length + 1];
+        addAt(product, z0, 0);
+        addAt(product, z1, half);
+        addAt(product, z2, 2 * half);
+        return product;
+    }
+
+    /**
+     * Toom-3 multiplication: each factor is split into three parts, the two
+     * quadratic polynomials are evaluated at 0, 1, -1, 2 and infinity, the
+     * five pointwise products are taken, and the product polynomial is
+     * recovered by interpolation (Bodrato's sequence, as in
+     * {@code java.math.BigInteger}).
+     *
+     * @param a
+     *            first factor
+     * @param b
+     *            second factor
+     * @param squaring
+     *            whether a and b are the same number
+     * @return a * b
+     */
+    private static int[] toom3(int[] a, int[] b, boolean squaring) {
+        int k = (Math.max(a.length, b.length) + 2) / THREE;
+        Signed a0 = new Signed(slice(a, 0, k));
+        Signed a1 = new Signed(slice(a, k, 2 * k));
+        Signed a2 = new Signed(slice(a, 2 * k, a.length));
+        Signed b0 = new Signed(slice(b, 0, k));
+        Signed b1 = new Signed(slice(b, k, 2 * k));
+        Signed b2 = new Signed(slice(b, 2 * k, b.length));
+
+        Signed v0 = Signed.multiply(a0, b0, squaring);
+        Signed da1 = Signed.add(a2, a0);
+        Signed db1 = Signed.add(b2, b0);
+        Signed vm1 = Signed.multiply(Signed.subtract(da1, a1),
+                Signed.subtract(db1, b1), squaring);
+        da1 = Signed.add(da1, a1);
+        db1 = Signed.add(db1, b1);
+        Signed v1 = Signed.multiply(da1, db1, squaring);
+        Signed v2 = Signed.multiply(
+                Signed.subtract(Signed.twice(Signed.add(da1, a2)), a0),
+                Signed.subtract(Signed.twice(Signed.add(db1, b2)), b0),
+                squaring);
+        Signed vInf = Signed.multiply(a2, b2, squaring);
+
+        /*
+         * Interpolation; every division is exact
+         */
+        Signed t2 = Signed.subtract(v2, vm1).divideExactlyBy3();
+        Signed tm1 = Signed.subtract(v1, vm1).half();
+        Signed t1 = Signed.subtract(v1, v0);
+        t2 = Signed.subtract(t2, t1).half();
+        t1 = Signed.subtract(Signed.subtract(t1, tm1), vInf);
+        t2 = Signed.subtract(t2, Signed.twice(vInf));
+        tm1 = Signed.subtract(tm1, t2);
+
+        /*
+         * tm1, t1 and t2 are now the middle coefficients of the product
+         * polynomial, which are nonnegative
+         */
+        int[] product = new int[a.length + b.length + 1];
+        addAt(product, v0.magnitude(), 0);
+        addAt(product, tm1.magnitude(), k);
+        addAt(product, t1.magnitude(), 2 * k);
+        addAt(product, t2.magnitude(), THREE * k);
+        addAt(product, vInf.magnitude(), 2 * 2 * k);
+        return product;
+    }
+
+    /**
+     * Returns a without its leading zero limbs.
+     *
+     * @param a
+     *            limbs
+     * @return a, trimmed
+     */
+    static int[] trim(int[] a) {
+        int length = a.length;
+        while (length > 0 && a[length - 1] == 0) {
+            length--;
+        }
+        int[] result = a;
+        if (length < a.length) {
+            result = Arrays.copyOf(a, length);
+        }
+        return result;
+    }
+
+    /**
+     * Returns limbs [from, to) of a, clipped to a's length.
+     *
+     * @param a
+     *            limbs
+     * @param from
+     *            first limb
+     * @param to
+     *            one past the last limb
+     * @return the slice, trimmed
+     */
+    private static int[] slice(int[] a, int from, int to) {
+        int start = Math.min(from, a.length);
+        int end = Math.min(to, a.length);
+        return trim(Arrays.copyOfRange(a, start, end));
+    }
+
+    /**
+     * Returns a + b.
+     *
+     * @param a
+     *            first addend
+     * @param b
+     *            second addend
+     * @return a + b, trimmed
+     */
+    static int[] add(int[] a, int[] b) {
+        int[] sum = new int[Math.max(a.length, b.length) + 1];
+        addAt(sum, a, 0);
+        addAt(sum, b, 0);
+        return trim(sum);
+    }
+
+    /**
+     * Adds b * 2^(32 offset) to target.
+     *
+     * @param target
+     *            the sum (on return)
+     * @param b
+     *            the addend
+     * @param offset
+     *            limb position of b's lowest limb
+     * @updates target
+     * @requires [target is long enough to hold the sum]
+     */
+    static void addAt(int[] target, int[] b, int offset) {
+        /*
+         * Leading zero limbs of b are skipped, since they might not fit
+         */
+        int length = b.length;
+        while (length > 0 && b[length - 1] == 0) {
+            length--;
+        }
+        long carry = 0;
+        int i = 0;
+        while (i < length || carry != 0) {
+            long t = (target[offset + i] & MASK) + carry;
+            if (i < length) {
+                t += b[i] & MASK;
+            }
+            target[offset + i] = (int) t;
+            carry = t >>> LIMB_BITS;
+            i++;
+        }
+    }
+
+    /**
+     * Subtracts b from target.
+     *
+     * @param target
+     *            the difference (on return)
+     * @param b
+     *            the subtrahend
+     * @updates target
+     * @requires target >= b
+     */
+    static void subtractInPlace(int[] target, int[] b) {
+        long borrow = 0;
+        int i = 0;
+        while (i < b.length || borrow != 0) {
+            long t = (target[i] & MASK) - borrow;
+            if (i < b.length) {
+                t -= b[i] & MASK;
+            }
+            target[i] = (int) t;
+            borrow = (t >> LIMB_BITS) & 1;
+            i++;
+        }
+    }
+
+    /**
+     * Compares a and b as unsigned numbers.
+     *
+     * @param a
+     *            first number, trimmed
+     * @param b
+     *            second number, trimmed
+     * @return negative, zero, or positive as a is less than, equal to, or
+     *         greater than b
+     */
+    static int compare(int[] a, int[] b) {
+        int result = Integer.compare(a.length, b.length);
+        int i = a.length - 1;
+        while (result == 0 && i >= 0) {
+            result = Integer.compareUnsigned(a[i], b[i]);
+            i--;
+        }
+        return result;
+    }
+
+    /**
+     * Signed integer as a sign and a trimmed magnitude, for the Toom-3
+     * evaluation points and interpolation, where intermediate values can be
+     * negative.
+     */
+    private static final class Signed {
+
+        /**
+         * -1, 0 or 1.
+         */
+        private final int sign;
+
+        /**
+         * Absolute value, trimmed.
+         */
+        private final int[] mag;
+
+        /**
+         * Nonnegative constructor.
+         *
+         * @param magnitude
+         *            the value
+         */
+        Signed(int[] magnitude) {
+            this(1, magnitude);
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param sign
+         *            sign of the value (ignored if magnitude is zero)
+         * @param magnitude
+         *            absolute value
+         */
+        Signed(int sign, int[] magnitude) {
+            this.mag = trim(magnitude);
+            if (this.mag.length == 0) {
+                this.sign = 0;
+            } else {
+                this.sign = sign;
+            }
+        }
+
+        /**
+         * Returns the magnitude of a value known to be nonnegative.
+         *
+         * @return the value
+         */
+        int[] magnitude() {
+            assert this.sign >= 0 : "Violation of: this >= 0";
+            return this.mag;
+        }
+
+        /**
+         * Returns x + y.
+         *
+         * @param x
+         *            first addend
+         * @param y
+         *            second addend
+         * @return x + y
+         */
+        static Signed add(Signed x, Signed y) {
+            Signed sum;
+            if (x.sign == 0) {
+                sum = y;
+            } else if (y.sign == 0) {
+                sum = x;
+            } else if (x.sign == y.sign) {
+                sum = new Signed(x.sign, LimbMultiplier.add(x.mag, y.mag));
+            } else {
+                int c = compare(x.mag, y.mag);
+                if (c >= 0) {
+                    int[] difference = x.mag.clone();
+                    subtractInPlace(difference, y.mag);
+                    sum = new Signed(x.sign, difference);
+                } else {
+                    int[] difference = y.mag.clone();
+                    subtractInPlace(difference, x.mag);
+                    sum = new Signed(y.sign, difference);
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * Returns x - y.
+         *
+         * @param x
+         *            minuend
+         * @param y
+         *            subtrahend
+         * @return x - y
+         */
+        static Signed subtract(Signed x, Signed y) {
+            return add(x, new Signed(-y.sign, y.mag));
+        }
+
+        /**
+         * Returns x * y.
+         *
+         * @param x
+         *            first factor
+         * @param y
+         *            second factor
+         * @param squaring
+         *            whether x and y are the same number
+         * @return x * y
+         */
+        static Signed multiply(Signed x, Signed y, boolean squaring) {
+            return new Signed(x.sign * y.sign,
+                    recurse(x.mag, y.mag, squaring));
+        }
+
+        /**
+         * Returns 2 * x.
+         *
+         * @param x
+         *            the number
+         * @return 2 * x
+         */
+        static Signed twice(Signed x) {
+            return new Signed(x.sign, LimbMultiplier.add(x.mag, x.mag));
+        }
+
+        /**
+         * Returns this / 2.
+         *
+         * @return this / 2
+         * @requires [this is even]
+         */
+        Signed half() {
+            int[] result = new int[this.mag.length];
+            for (int i = 0; i < this.mag.length; i++) {
+                int high = 0;
+                if (i + 1 < this.mag.length) {
+                    high = this.mag[i + 1] << (LIMB_BITS - 1);
+                }
+                result[i] = (this.mag[i] >>> 1) | high;
+            }
+            return new Signed(this.sign, result);
+        }
+
+        /**
+         * Returns this / 3.
+         *
+         * @return this / 3
+         * @requires [this is a multiple of 3]
+         */
+        Signed divideExactlyBy3() {
+            int[] result = new int[this.mag.length];
+            long remainder = 0;
+            for (int i = this.mag.length - 1; i >= 0; i--) {
+                long t = (remainder << LIMB_BITS) | (this.mag[i] & MASK);
+                result[i] = (int) (t / THREE);
+                remainder = t % THREE;
+            }
+            return new Signed(this.sign, result);
+        }
+
+    }
+
+}
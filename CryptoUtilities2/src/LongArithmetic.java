@@ -0,0 +1,507 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Modular arithmetic and primality testing on {@code long} values, used by
+ * {@code CryptoUtilities2} whenever its arguments fit in 63 bits. Products are
+ * formed as 128-bit values with {@code Math.multiplyHigh} and reduced with
+ * 64-bit Montgomery reduction, so nothing is allocated; primality uses
+ * Miller-Rabin with the seven bases found by Jim Sinclair, which is exact for
+ * every 64-bit number.
+ *
+ * @author Ayman Abumaike
+ *
+ */
+final class LongArithmetic {
+
+    /**
+     * Bases that make Miller-Rabin exact for all n < 2^64.
+     */
+    private static final long[] BASES = { 2L, 325L, 9375L, 28178L, 450775L,
+        9780504L, 1795265022L };
+
+    /**
+     * Decimal digits in Long.MAX_VALUE.
+     */
+    private static final int MAX_DIGITS = 19;
+
+    /**
+     * Long.MAX_VALUE as a string, for comparing 19-digit numbers.
+     */
+    private static final String MAX_STRING = Long.toString(Long.MAX_VALUE);
+
+    /**
+     * Useful constant, not a magic number: 64.
+     */
+    private static final int LONG_BITS = 64;
+
+    /**
+     * Newton iterations needed to get m^(-1) mod 2^64 starting from m (which
+     * is already correct to 3 bits, doubling each time).
+     */
+    private static final int NEWTON_STEPS = 5;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private LongArithmetic() {
+    }
+
+    /**
+     * Returns the value of n if it fits in a {@code long}, and -1 otherwise.
+     *
+     * @param n
+     *            the number
+     * @return n, or -1 if n > Long.MAX_VALUE
+     */
+    static long toLongIfFits(NaturalNumber n) {
+        long result = -1;
+        if (n instanceof NaturalNumber4) {
+            NaturalNumber4 limbs = (NaturalNumber4) n;
+            if (limbs.bitLength() < LONG_BITS) {
+                result = limbs.toLong();
+            }
+        } else {
+            String digits = n.toString();
+            if (digits.length() < MAX_DIGITS
+                    || (digits.length() == MAX_DIGITS
+                            && digits.compareTo(MAX_STRING) <= 0)) {
+                result = Long.parseLong(digits);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets n to the value v.
+     *
+     * @param n
+     *            the number
+     * @param v
+     *            the value
+     * @replaces n
+     * @requires v >= 0
+     * @ensures n = v
+     */
+    static void setFromLong(NaturalNumber n, long v) {
+        assert v >= 0 : "Violation of: v >= 0";
+        if (n instanceof NaturalNumber4) {
+            ((NaturalNumber4) n).setFromLong(v);
+        } else if (v <= Integer.MAX_VALUE) {
+            n.setFromInt((int) v);
+        } else {
+            n.clear();
+            String digits = Long.toString(v);
+            for (int i = 0; i < digits.length(); i++) {
+                n.multiplyBy10(digits.charAt(i) - '0');
+            }
+        }
+    }
+
+    /**
+     * Returns a^p mod m.
+     *
+     * @param a
+     *            base
+     * @param p
+     *            exponent
+     * @param m
+     *            modulus
+     * @return a^p mod m
+     * @requires a >= 0 and p >= 0 and m > 1
+     */
+    static long powerMod(long a, long p, long m) {
+        long result;
+        if ((m & 1) == 1) {
+            Montgomery context = new Montgomery(m);
+            result = context.fromMontgomery(
+                    context.power(context.toMontgomery(a % m), p));
+        } else {
+            /*
+             * Even modulus: no Montgomery form, so reduce each 128-bit
+             * product directly
+             */
+            result = 1 % m;
+            long base = a % m;
+            long e = p;
+            while (e > 0) {
+                if ((e & 1) == 1) {
+                    result = mulMod(result, base, m);
+                }
+                base = mulMod(base, base, m);
+                e >>>= 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a * b mod m for any modulus.
+     *
+     * @param a
+     *            first factor
+     * @param b
+     *            second factor
+     * @param m
+     *            modulus
+     * @return a * b mod m
+     * @requires 0 <= a < m and 0 <= b < m
+     */
+    static long mulMod(long a, long b, long m) {
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        long result;
+        if (high == 0 && low >= 0) {
+            result = low % m;
+        } else {
+            /*
+             * Long division of the 128-bit product by m, one bit at a time;
+             * only reached for even moduli above 2^32
+             */
+            long r = high % m;
+            for (int i = LONG_BITS - 1; i >= 0; i--) {
+                boolean overflow = r < 0;
+                r = (r << 1) | ((low >>> i) & 1);
+                if (overflow || Long.compareUnsigned(r, m) >= 0) {
+                    r -= m;
+                }
+            }
+            result = r;
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether n is prime; exact for every n >= 0. Numbers below
+     * {@code PrimeSieve.SIEVED_LIMIT} are looked up in the sieve.
+     *
+     * @param n
+     *            number to be checked
+     * @return true iff n is prime
+     * @requires n >= 0
+     */
+    static boolean isPrime(long n) {
+        final int[] smallPrimes = { 2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31,
+            37 };
+        boolean isPrime = n > 1;
+        boolean decided = n < 2;
+        if (!decided && n < PrimeSieve.SIEVED_LIMIT) {
+            isPrime = PrimeSieve.isSievedPrime((int) n);
+            decided = true;
+        }
+        int i = 0;
+        while (!decided && i < smallPrimes.length) {
+            if (n % smallPrimes[i] == 0) {
+                isPrime = n == smallPrimes[i];
+                decided = true;
+            }
+            i++;
+        }
+        if (!decided) {
+            isPrime = isStrongProbablePrime(n);
+        }
+        return isPrime;
+    }
+
+    /**
+     * Reports whether odd n passes Miller-Rabin with all seven bases.
+     *
+     * @param n
+     *            number to be checked
+     * @return true iff n is a strong probable prime to every base
+     * @requires n > 37 and n is odd
+     */
+    private static boolean isStrongProbablePrime(long n) {
+        long d = n - 1;
+        int s = Long.numberOfTrailingZeros(d);
+        d >>>= s;
+        Montgomery context = new Montgomery(n);
+        long one = context.toMontgomery(1);
+        long minusOne = context.toMontgomery(n - 1);
+        boolean isPrime = true;
+        int i = 0;
+        while (isPrime && i < BASES.length) {
+            long base = BASES[i] % n;
+            if (base != 0) {
+                long x;
+                if (base == 2) {
+                    x = context.powerOfTwo(d);
+                } else {
+                    x = context.power(context.toMontgomery(base), d);
+                }
+                boolean passes = x == one || x == minusOne;
+                int r = 1;
+                while (!passes && r < s) {
+                    x = context.multiply(x, x);
+                    passes = x == minusOne;
+                    r++;
+                }
+                isPrime = passes;
+            }
+            i++;
+        }
+        return isPrime;
+    }
+
+    /**
+     * Looks for a nontrivial factor of n with Brent's variant of Pollard's
+     * rho method, iterating x -> x^2 + c in Montgomery form and taking one
+     * GCD per batch of {@code batch} steps.
+     *
+     * @param n
+     *            the number to be split
+     * @param c
+     *            the constant of the iteration
+     * @param batch
+     *            number of steps whose differences share one GCD
+     * @return a divisor of n; it is n itself if this c failed
+     * @requires n > 1 and n is odd and [n is composite] and 0 < c < n
+     * @ensures n mod pollardBrent = 0 and 1 < pollardBrent
+     */
+    static long pollardBrent(long n, long c, int batch) {
+        Montgomery context = new Montgomery(n);
+        long y = context.toMontgomery(2 % n);
+        long cm = context.toMontgomery(c);
+        long x = y;
+        long ys = y;
+        long q = context.toMontgomery(1);
+        long g = 1;
+        long r = 1;
+        while (g == 1) {
+            x = y;
+            for (long i = 0; i < r; i++) {
+                y = context.step(y, cm);
+            }
+            long k = 0;
+            while (k < r && g == 1) {
+                ys = y;
+                long steps = Math.min(batch, r - k);
+                for (long i = 0; i < steps; i++) {
+                    y = context.step(y, cm);
+                    q = context.multiply(q, Math.abs(x - y));
+                }
+                g = gcd(q, n);
+                k += batch;
+            }
+            r *= 2;
+        }
+        if (g == n) {
+            /*
+             * The batch overshot (several factors at once, or q hit 0); redo
+             * its steps one GCD at a time
+             */
+            do {
+                ys = context.step(ys, cm);
+                g = gcd(Math.abs(x - ys), n);
+            } while (g == 1);
+        }
+        return g;
+    }
+
+    /**
+     * Returns the greatest common divisor of a and b.
+     *
+     * @param a
+     *            one number
+     * @param b
+     *            the other number
+     * @return gcd(a, b)
+     * @requires a >= 0 and b >= 0
+     */
+    static long gcd(long a, long b) {
+        long result;
+        if (a == 0) {
+            result = b;
+        } else if (b == 0) {
+            result = a;
+        } else {
+            /*
+             * Stein's binary algorithm, as in CryptoUtilities2.reduceToGCD
+             */
+            int shift = Long.numberOfTrailingZeros(a | b);
+            long u = a >>> Long.numberOfTrailingZeros(a);
+            long v = b;
+            while (v != 0) {
+                v >>>= Long.numberOfTrailingZeros(v);
+                if (u > v) {
+                    long swap = u;
+                    u = v;
+                    v = swap;
+                }
+                v -= u;
+            }
+            result = u << shift;
+        }
+        return result;
+    }
+
+    /**
+     * Montgomery arithmetic with R = 2^64 for one odd modulus m < 2^63.
+     */
+    private static final class Montgomery {
+
+        /**
+         * The modulus.
+         */
+        private final long m;
+
+        /**
+         * -m^(-1) mod 2^64.
+         */
+        private final long mNegInverse;
+
+        /**
+         * R^2 mod m, for converting into Montgomery form.
+         */
+        private final long r2;
+
+        /**
+         * Constructor.
+         *
+         * @param m
+         *            the modulus
+         * @requires m > 1 and m is odd
+         */
+        Montgomery(long m) {
+            this.m = m;
+            long inverse = m;
+            for (int i = 0; i < NEWTON_STEPS; i++) {
+                inverse *= 2 - m * inverse;
+            }
+            this.mNegInverse = -inverse;
+            /*
+             * R mod m = (2^64 - m) mod m, computed without overflow; then
+             * R^2 mod m = (R mod m)^2 mod m
+             */
+            long r = Long.remainderUnsigned(-m, m);
+            this.r2 = mulMod(r, r, m);
+        }
+
+        /**
+         * Returns a * b * R^(-1) mod m.
+         *
+         * @param a
+         *            first factor
+         * @param b
+         *            second factor
+         * @return a * b * R^(-1) mod m
+         * @requires 0 <= a < m and 0 <= b < m
+         */
+        long multiply(long a, long b) {
+            long high = Math.multiplyHigh(a, b);
+            long low = a * b;
+            /*
+             * u * m = -low (mod 2^64), so low + u * m carries exactly when
+             * low /= 0, and the result is high + high(u * m) + carry
+             */
+            long u = low * this.mNegInverse;
+            long uHigh = Math.multiplyHigh(u, this.m);
+            if (u < 0) {
+                uHigh += this.m;
+            }
+            long result = high + uHigh;
+            if (low != 0) {
+                result++;
+            }
+            if (Long.compareUnsigned(result, this.m) >= 0) {
+                result -= this.m;
+            }
+            return result;
+        }
+
+        /**
+         * Returns x * x * R^(-1) + c mod m, one step of Pollard's iteration.
+         *
+         * @param x
+         *            current value
+         * @param c
+         *            the constant
+         * @return the next value
+         * @requires 0 <= x < m and 0 <= c < m
+         */
+        long step(long x, long c) {
+            long result = this.multiply(x, x) + c;
+            if (Long.compareUnsigned(result, this.m) >= 0) {
+                result -= this.m;
+            }
+            return result;
+        }
+
+        /**
+         * Returns a * R mod m.
+         *
+         * @param a
+         *            the number
+         * @return a in Montgomery form
+         * @requires 0 <= a < m
+         */
+        long toMontgomery(long a) {
+            return this.multiply(a, this.r2);
+        }
+
+        /**
+         * Returns a * R^(-1) mod m.
+         *
+         * @param a
+         *            number in Montgomery form
+         * @return a out of Montgomery form
+         * @requires 0 <= a < m
+         */
+        long fromMontgomery(long a) {
+            return this.multiply(a, 1);
+        }
+
+        /**
+         * Returns a^p in Montgomery form.
+         *
+         * @param a
+         *            base, in Montgomery form
+         * @param p
+         *            exponent
+         * @return a^p, in Montgomery form
+         * @requires p >= 0
+         */
+        long power(long a, long p) {
+            long result = this.toMontgomery(1 % this.m);
+            long base = a;
+            long e = p;
+            while (e > 0) {
+                if ((e & 1) == 1) {
+                    result = this.multiply(result, base);
+                }
+                base = this.multiply(base, base);
+                e >>>= 1;
+            }
+            return result;
+        }
+
+        /**
+         * Returns 2^p in Montgomery form; each multiply step of
+         * square-and-multiply is a doubling, i.e., a shift and at most one
+         * subtraction.
+         *
+         * @param p
+         *            exponent
+         * @return 2^p, in Montgomery form
+         * @requires p >= 0
+         */
+        long powerOfTwo(long p) {
+            long result = this.toMontgomery(1 % this.m);
+            for (int i = LONG_BITS - 1 - Long.numberOfLeadingZeros(p); i >= 0;
+                    i--) {
+                result = this.multiply(result, result);
+                if (((p >>> i) & 1) == 1) {
+                    /*
+                     * result < m < 2^63, so the shift cannot lose a bit
+                     */
+                    result <<= 1;
+                    if (Long.compareUnsigned(result, this.m) >= 0) {
+                        result -= this.m;
+                    }
+                }
+            }
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,120 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Miller-Rabin strong probable prime test for one fixed odd number
+ * {@code n}. The factorization n - 1 = d * 2^s, the Montgomery context for n,
+ * and the Montgomery forms of 1 and n - 1 are computed once by the
+ * constructor and shared by every witness that is tried.
+ *
+ * @author Ayman Abumaike
+ *
+ */
+final class MillerRabin {
+
+    /**
+     * The number being tested.
+     */
+    private final NaturalNumber n;
+
+    /**
+     * Montgomery context for n.
+     */
+    private final MontgomeryModulus context;
+
+    /**
+     * Bits of the odd part d of n - 1, least significant first.
+     */
+    private final boolean[] dBits;
+
+    /**
+     * Exponent s of the power of 2 in n - 1.
+     */
+    private final int s;
+
+    /**
+     * 1 in Montgomery form.
+     */
+    private final NaturalNumber one;
+
+    /**
+     * n - 1 in Montgomery form.
+     */
+    private final NaturalNumber minusOne;
+
+    /**
+     * Constructor.
+     *
+     * @param n
+     *            the number to be tested
+     * @requires n > 3 and [n is coprime to 10]
+     */
+    MillerRabin(NaturalNumber n) {
+        assert MontgomeryModulus.isApplicable(n) : ""
+                + "Violation of: n is coprime to 10";
+        this.n = n.newInstance();
+        this.n.copyFrom(n);
+        this.context = new MontgomeryModulus(n);
+
+        /*
+         * n - 1 is even; strip its trailing zero bits off to get d and s
+         */
+        NaturalNumber nMinusOne = n.newInstance();
+        nMinusOne.copyFrom(n);
+        nMinusOne.decrement();
+        boolean[] bits = MontgomeryModulus.bitsOf(nMinusOne);
+        int zeros = 0;
+        while (!bits[zeros]) {
+            zeros++;
+        }
+        this.s = zeros;
+        this.dBits = new boolean[bits.length - zeros];
+        System.arraycopy(bits, zeros, this.dBits, 0, this.dBits.length);
+
+        this.one = n.newInstance();
+        this.one.setFromInt(1);
+        this.context.toMontgomery(this.one);
+        this.minusOne = nMinusOne;
+        this.context.toMontgomery(this.minusOne);
+    }
+
+    /**
+     * Reports whether w is a strong witness that n is composite.
+     *
+     * @param w
+     *            witness candidate
+     * @return true iff w is a strong witness that n is composite
+     * @requires 1 < w < n - 1
+     * @ensures <pre>
+     * isWitness = (w ^ d mod n /= 1  and
+     *              for all r: integer where (0 <= r < s)
+     *                (w ^ (d * 2^r) mod n /= n - 1))
+     * </pre>
+     */
+    boolean isWitness(NaturalNumber w) {
+        NaturalNumber x = this.n.newInstance();
+        if (w.canConvertToInt() && w.toInt() == 2) {
+            this.context.powerOfTwoToMontgomery(x, this.dBits);
+        } else {
+            x.copyFrom(w);
+            this.context.powerToMontgomery(x, this.dBits);
+        }
+        boolean witness = x.compareTo(this.one) != 0
+                && x.compareTo(this.minusOne) != 0;
+        /*
+         * Keep squaring; reaching n - 1 clears w, reaching 1 first means a
+         * nontrivial square root of 1 was just found
+         */
+        int r = 1;
+        while (witness && r < this.s) {
+            this.context.square(x);
+            if (x.compareTo(this.minusOne) == 0) {
+                witness = false;
+            } else if (x.compareTo(this.one) == 0) {
+                r = this.s;
+            }
+            r++;
+        }
+        return witness;
+    }
+
+}
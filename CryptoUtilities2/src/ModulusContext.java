@@ -0,0 +1,208 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Barrett reduction for a fixed modulus {@code m}: the constant
+ * {@code mu = floor(b^(2k) / m)} is computed once, where {@code b^(k-1) <= m <
+ * b^k}, and from then on every reduction of a number below {@code m^2} takes
+ * two multiplications, two shifts and at most two subtractions instead of a
+ * long division. The base {@code b} is 2 for {@code NaturalNumber4}, whose
+ * shifts are binary, and 10 for every other implementation, whose cheap
+ * shifts are {@code multiplyBy10}/{@code divideBy10}. Unlike
+ * {@code MontgomeryModulus}, this works for any modulus, including even ones
+ * and multiples of 5.
+ *
+ * @author Ayman Abumaike
+ *
+ */
+final class ModulusContext {
+
+    /**
+     * The modulus.
+     */
+    private final NaturalNumber m;
+
+    /**
+     * Whether shifts are binary (NaturalNumber4) rather than decimal.
+     */
+    private final boolean binary;
+
+    /**
+     * Number of base-b digits of the modulus.
+     */
+    private final int k;
+
+    /**
+     * The Barrett constant floor(b^(2k) / m).
+     */
+    private final NaturalNumber mu;
+
+    /**
+     * Scratch number for the quotient estimate.
+     */
+    private final NaturalNumber quotient;
+
+    /**
+     * Scratch number reused by {@code sqrMod}.
+     */
+    private final NaturalNumber scratch;
+
+    /**
+     * Constructor; precomputes the Barrett constant for {@code m}.
+     *
+     * @param m
+     *            the modulus
+     * @requires m > 1
+     */
+    ModulusContext(NaturalNumber m) {
+        this.m = m.newInstance();
+        this.m.copyFrom(m);
+        this.binary = m instanceof NaturalNumber4;
+        if (this.binary) {
+            this.k = ((NaturalNumber4) m).bitLength();
+        } else {
+            NaturalNumber copyM = m.newInstance();
+            copyM.copyFrom(m);
+            int digits = 0;
+            while (!copyM.isZero()) {
+                copyM.divideBy10();
+                digits++;
+            }
+            this.k = digits;
+        }
+        this.mu = m.newInstance();
+        this.mu.setFromInt(1);
+        this.shiftUp(this.mu, 2 * this.k);
+        this.mu.divide(this.m);
+        this.quotient = m.newInstance();
+        this.scratch = m.newInstance();
+    }
+
+    /**
+     * Multiplies x by b^count.
+     *
+     * @param x
+     *            the number
+     * @param count
+     *            number of base-b digits to shift by
+     * @updates x
+     * @ensures x = #x * b^count
+     */
+    private void shiftUp(NaturalNumber x, int count) {
+        if (this.binary) {
+            ((NaturalNumber4) x).shiftLeft(count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                x.multiplyBy10(0);
+            }
+        }
+    }
+
+    /**
+     * Divides x by b^count, discarding the remainder.
+     *
+     * @param x
+     *            the number
+     * @param count
+     *            number of base-b digits to shift by
+     * @updates x
+     * @ensures x = #x / b^count
+     */
+    private void shiftDown(NaturalNumber x, int count) {
+        if (this.binary) {
+            ((NaturalNumber4) x).shiftRight(count);
+        } else {
+            int i = 0;
+            while (i < count && !x.isZero()) {
+                x.divideBy10();
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Reduces x modulo m.
+     *
+     * @param x
+     *            the number to reduce
+     * @updates x
+     * @requires x < b^(2k)  [in particular, any x < m^2 will do]
+     * @ensures x = #x mod m
+     */
+    void reduce(NaturalNumber x) {
+        /*
+         * q = floor(floor(x / b^(k-1)) * mu / b^(k+1)) is at most 2 below
+         * floor(x / m), so x - q * m is less than 3m
+         */
+        this.quotient.copyFrom(x);
+        this.shiftDown(this.quotient, this.k - 1);
+        this.quotient.multiply(this.mu);
+        this.shiftDown(this.quotient, this.k + 1);
+        this.quotient.multiply(this.m);
+        x.subtract(this.quotient);
+        while (x.compareTo(this.m) >= 0) {
+            x.subtract(this.m);
+        }
+    }
+
+    /**
+     * Updates a to a * b mod m.
+     *
+     * @param a
+     *            first factor
+     * @param b
+     *            second factor
+     * @updates a
+     * @requires a < m and b < m
+     * @ensures a = #a * b mod m
+     */
+    void mulMod(NaturalNumber a, NaturalNumber b) {
+        a.multiply(b);
+        this.reduce(a);
+    }
+
+    /**
+     * Updates a to a * a mod m.
+     *
+     * @param a
+     *            the number to square
+     * @updates a
+     * @requires a < m
+     * @ensures a = #a * #a mod m
+     */
+    void sqrMod(NaturalNumber a) {
+        this.scratch.copyFrom(a);
+        a.multiply(this.scratch);
+        this.reduce(a);
+    }
+
+    /**
+     * Updates n to its p-th power modulo m with left-to-right
+     * square-and-multiply.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @updates n
+     * @ensures n = #n ^ (p) mod m
+     */
+    void power(NaturalNumber n, NaturalNumber p) {
+        /*
+         * One long division brings n below m; every later step stays below
+         * m^2 and is reduced the Barrett way
+         */
+        NaturalNumber original = n.newInstance();
+        original.copyFrom(n);
+        NaturalNumber remainder = original.divide(this.m);
+        original.transferFrom(remainder);
+        n.setFromInt(1);
+        boolean[] bits = MontgomeryModulus.bitsOf(p);
+        for (int i = bits.length - 1; i >= 0; i--) {
+            this.sqrMod(n);
+            if (bits[i]) {
+                this.mulMod(n, original);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,510 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Modular exponentiation engine that keeps a fixed modulus {@code m} in
+ * Montgomery form, so no long division is done inside the exponentiation
+ * loop.
+ *
+ * <p>
+ * For {@code NaturalNumber4} the radix is {@code R = 2^k}, where {@code k} is
+ * the bit length of {@code m}, and a reduction is the usual word-level REDC:
+ * two multiplications, two truncations to k bits and one shift, with
+ * {@code -m^(-1) mod R} computed once. For every other implementation the
+ * radix is {@code R = 10^k}, where {@code k} is the number of decimal digits
+ * of {@code m}, and a reduction only needs {@code multiplyBy10}/
+ * {@code divideBy10} and additions of precomputed multiples of {@code m}; that
+ * digit-at-a-time loop would cost k additions of a full-size number on
+ * {@code NaturalNumber4}, which is many times slower than the binary REDC.
+ * </p>
+ *
+ * @author Ayman Abumaike
+ *
+ */
+final class MontgomeryModulus {
+
+    /**
+     * Radix of the {@code NaturalNumber} digits.
+     */
+    private static final int RADIX = 10;
+
+    /**
+     * Inverses modulo 10 of the digits coprime to 10 (other entries unused).
+     */
+    private static final int[] INVERSE_MOD_10 = { 0, 1, 0, 7, 0, 0, 0, 3, 0,
+        9 };
+
+    /**
+     * The modulus.
+     */
+    private final NaturalNumber m;
+
+    /**
+     * Whether the radix is binary (NaturalNumber4) rather than decimal.
+     */
+    private final boolean binary;
+
+    /**
+     * Number of base-b digits of the modulus, i.e., R = b^k, where b is 2 if
+     * binary and 10 otherwise.
+     */
+    private final int k;
+
+    /**
+     * -m^(-1) mod 10; only used if not binary.
+     */
+    private final int mPrime;
+
+    /**
+     * mShifted[u] = floor(u * m / 10), for u in [0, 9]; null if binary.
+     */
+    private final NaturalNumber[] mShifted;
+
+    /**
+     * -m^(-1) mod 2^k; null if not binary.
+     */
+    private final NaturalNumber mInverse;
+
+    /**
+     * Scratch number reused by the binary {@code reduce}.
+     */
+    private final NaturalNumber low;
+
+    /**
+     * Scratch NaturalNumber4 standing in for arguments of another
+     * implementation in binary mode.
+     */
+    private final NaturalNumber4 wide;
+
+    /**
+     * Scratch number reused by {@code square}.
+     */
+    private final NaturalNumber scratch;
+
+    /**
+     * Reports whether a Montgomery context can be built for {@code m}, i.e.,
+     * whether m is coprime to the radix.
+     *
+     * @param m
+     *            the modulus
+     * @return true iff m is odd and not divisible by 5
+     * @ensures isApplicable = (m mod 2 /= 0 and m mod 5 /= 0)
+     */
+    public static boolean isApplicable(NaturalNumber m) {
+        int lastDigit = m.divideBy10();
+        m.multiplyBy10(lastDigit);
+        return INVERSE_MOD_10[lastDigit] != 0;
+    }
+
+    /**
+     * Constructor; precomputes everything that depends only on {@code m}.
+     *
+     * @param m
+     *            the modulus
+     * @requires m > 1 and isApplicable(m)
+     */
+    MontgomeryModulus(NaturalNumber m) {
+        assert isApplicable(m) : "Violation of: m is coprime to 10";
+        this.m = m.newInstance();
+        this.m.copyFrom(m);
+        this.binary = m instanceof NaturalNumber4;
+        this.scratch = m.newInstance();
+        this.low = m.newInstance();
+        this.wide = new NaturalNumber4();
+        if (this.binary) {
+            /*
+             * R = 2^k > m, and -m^(-1) mod R = R - m^(-1) mod R, since m is
+             * odd
+             */
+            this.k = ((NaturalNumber4) m).bitLength();
+            this.mPrime = 0;
+            this.mShifted = null;
+            NaturalNumber4 r = new NaturalNumber4(1);
+            r.shiftLeft(this.k);
+            NaturalNumber inverse = m.newInstance();
+            inverse.copyFrom(m);
+            CryptoUtilities2.modInverse(inverse, r);
+            r.subtract(inverse);
+            this.mInverse = r;
+        } else {
+            /*
+             * Count the digits of m and record -m^(-1) mod 10 from its last
+             * digit
+             */
+            NaturalNumber copyM = m.newInstance();
+            copyM.copyFrom(m);
+            int lastDigit = copyM.divideBy10();
+            int digits = 1;
+            while (!copyM.isZero()) {
+                copyM.divideBy10();
+                digits++;
+            }
+            this.k = digits;
+            this.mPrime = (RADIX - INVERSE_MOD_10[lastDigit]) % RADIX;
+            this.mInverse = null;
+
+            /*
+             * Table of floor(u * m / 10); one REDC step adds one of these
+             * instead of dividing
+             */
+            this.mShifted = new NaturalNumber[RADIX];
+            NaturalNumber multiple = m.newInstance();
+            for (int u = 0; u < RADIX; u++) {
+                NaturalNumber shifted = m.newInstance();
+                shifted.copyFrom(multiple);
+                shifted.divideBy10();
+                this.mShifted[u] = shifted;
+                multiple.add(m);
+            }
+        }
+    }
+
+    /**
+     * Montgomery reduction: updates t to t * R^(-1) mod m.
+     *
+     * @param t
+     *            number to be reduced
+     * @updates t
+     * @requires t < m * R
+     * @ensures t = #t * R^(-1) mod m
+     */
+    private void reduce(NaturalNumber t) {
+        if (this.binary) {
+            /*
+             * u = (t mod R) * (-m^(-1)) mod R makes t + u * m divisible by R,
+             * and (t + u * m) / R < 2m
+             */
+            NaturalNumber4 value = this.binaryView(t);
+            NaturalNumber4 u = (NaturalNumber4) this.low;
+            u.copyFrom(value);
+            u.truncate(this.k);
+            u.multiply(this.mInverse);
+            u.truncate(this.k);
+            u.multiply(this.m);
+            value.add(u);
+            value.shiftRight(this.k);
+            if (value != t) {
+                t.copyFrom(value);
+            }
+        } else {
+            this.reduceDecimal(t);
+        }
+        if (t.compareTo(this.m) >= 0) {
+            t.subtract(this.m);
+        }
+    }
+
+    /**
+     * Returns x itself if it is a NaturalNumber4, and otherwise a
+     * NaturalNumber4 scratch copy of x (which the caller copies back).
+     *
+     * @param x
+     *            the number
+     * @return x, or a NaturalNumber4 with the same value
+     */
+    private NaturalNumber4 binaryView(NaturalNumber x) {
+        NaturalNumber4 result;
+        if (x instanceof NaturalNumber4) {
+            result = (NaturalNumber4) x;
+        } else {
+            result = this.wide;
+            result.copyFrom(x);
+        }
+        return result;
+    }
+
+    /**
+     * Decimal Montgomery reduction, one digit at a time: updates t to a
+     * number congruent to t * R^(-1) mod m and less than 2m.
+     *
+     * @param t
+     *            number to be reduced
+     * @updates t
+     * @requires t < m * R
+     * @ensures t = #t * R^(-1) mod m  or  t = #t * R^(-1) mod m + m
+     */
+    private void reduceDecimal(NaturalNumber t) {
+        for (int i = 0; i < this.k; i++) {
+            /*
+             * Choose u so that t + u * m is divisible by 10, then divide by
+             * 10; since the low digit d of t is nonzero exactly when u is,
+             * (d + u * m) / 10 = floor(u * m / 10) + 1 in that case
+             */
+            int d = t.divideBy10();
+            if (d != 0) {
+                int u = (d * this.mPrime) % RADIX;
+                t.add(this.mShifted[u]);
+                t.increment();
+            }
+        }
+    }
+
+    /**
+     * Converts {@code x} into Montgomery form.
+     *
+     * @param x
+     *            the number to convert
+     * @updates x
+     * @ensures x = #x * R mod m
+     */
+    void toMontgomery(NaturalNumber x) {
+        if (this.binary) {
+            NaturalNumber4 value = this.binaryView(x);
+            value.shiftLeft(this.k);
+            if (value != x) {
+                x.copyFrom(value);
+            }
+        } else {
+            for (int i = 0; i < this.k; i++) {
+                x.multiplyBy10(0);
+            }
+        }
+        NaturalNumber remainder = x.divide(this.m);
+        x.transferFrom(remainder);
+    }
+
+    /**
+     * Converts {@code x} out of Montgomery form.
+     *
+     * @param x
+     *            the number to convert
+     * @updates x
+     * @requires x < m
+     * @ensures x = #x * R^(-1) mod m
+     */
+    void fromMontgomery(NaturalNumber x) {
+        this.reduce(x);
+    }
+
+    /**
+     * Montgomery product: updates a to a * b * R^(-1) mod m.
+     *
+     * @param a
+     *            first factor
+     * @param b
+     *            second factor
+     * @updates a
+     * @requires a < m and b < m
+     * @ensures a = #a * b * R^(-1) mod m
+     */
+    void multiply(NaturalNumber a, NaturalNumber b) {
+        a.multiply(b);
+        this.reduce(a);
+    }
+
+    /**
+     * Montgomery square: updates a to a * a * R^(-1) mod m.
+     *
+     * @param a
+     *            the number to square
+     * @updates a
+     * @requires a < m
+     * @ensures a = #a * #a * R^(-1) mod m
+     */
+    void square(NaturalNumber a) {
+        this.scratch.copyFrom(a);
+        a.multiply(this.scratch);
+        this.reduce(a);
+    }
+
+    /**
+     * Updates n to its p-th power modulo m using a left-to-right sliding
+     * window over the bits of p.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @updates n
+     * @ensures n = #n ^ (p) mod m
+     */
+    void power(NaturalNumber n, NaturalNumber p) {
+        boolean[] bits = bitsOf(p);
+        if (bits.length == 0) {
+            n.setFromInt(1);
+        } else {
+            this.powerToMontgomery(n, bits);
+            this.fromMontgomery(n);
+        }
+    }
+
+    /**
+     * Updates n to the Montgomery form of its p-th power modulo m, where p is
+     * given by its bits; callers that keep working in Montgomery form (e.g.,
+     * a chain of squarings) can skip the conversion back.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param bits
+     *            bits of the power, least significant first, as returned by
+     *            {@code bitsOf}
+     * @updates n
+     * @requires bits.length > 0 and bits[bits.length - 1]
+     * @ensures n = (#n ^ (p) mod m) * R mod m
+     */
+    void powerToMontgomery(NaturalNumber n, boolean[] bits) {
+        assert bits.length > 0 : "Violation of: bits.length > 0";
+        if (n.compareTo(this.m) >= 0) {
+            NaturalNumber remainder = n.divide(this.m);
+            n.transferFrom(remainder);
+        }
+        int window = windowSize(bits.length);
+
+        /*
+         * odd[i] holds n^(2i+1) in Montgomery form
+         */
+        NaturalNumber base = n.newInstance();
+        base.copyFrom(n);
+        this.toMontgomery(base);
+        NaturalNumber[] odd = new NaturalNumber[1 << (window - 1)];
+        odd[0] = base;
+        if (odd.length > 1) {
+            NaturalNumber baseSquared = n.newInstance();
+            baseSquared.copyFrom(base);
+            this.square(baseSquared);
+            for (int i = 1; i < odd.length; i++) {
+                odd[i] = n.newInstance();
+                odd[i].copyFrom(odd[i - 1]);
+                this.multiply(odd[i], baseSquared);
+            }
+        }
+
+        /*
+         * The top bit is always 1, so the accumulator starts at the first
+         * window's value instead of at 1
+         */
+        NaturalNumber acc = n;
+        boolean started = false;
+        int i = bits.length - 1;
+        while (i >= 0) {
+            if (!bits[i]) {
+                this.square(acc);
+                i--;
+            } else {
+                /*
+                 * Longest window [j, i] of at most window bits ending in a 1
+                 * bit
+                 */
+                int j = Math.max(i - window + 1, 0);
+                while (!bits[j]) {
+                    j++;
+                }
+                int value = 0;
+                for (int b = i; b >= j; b--) {
+                    value = 2 * value + (bits[b] ? 1 : 0);
+                }
+                if (started) {
+                    for (int b = i; b >= j; b--) {
+                        this.square(acc);
+                    }
+                    this.multiply(acc, odd[value / 2]);
+                } else {
+                    acc.copyFrom(odd[value / 2]);
+                    started = true;
+                }
+                i = j - 1;
+            }
+        }
+    }
+
+    /**
+     * Replaces n by the Montgomery form of 2 to the power p modulo m, where p
+     * is given by its bits. With base 2 every multiply step of
+     * square-and-multiply is a doubling, i.e., one addition and at most one
+     * subtraction, so only the squarings cost a reduction.
+     *
+     * @param n
+     *            the result
+     * @param bits
+     *            bits of the power, least significant first, as returned by
+     *            {@code bitsOf}
+     * @replaces n
+     * @requires bits.length > 0 and bits[bits.length - 1]
+     * @ensures n = (2 ^ (p) mod m) * R mod m
+     */
+    void powerOfTwoToMontgomery(NaturalNumber n, boolean[] bits) {
+        assert bits.length > 0 : "Violation of: bits.length > 0";
+        n.setFromInt(2);
+        this.toMontgomery(n);
+        for (int i = bits.length - 2; i >= 0; i--) {
+            this.square(n);
+            if (bits[i]) {
+                this.scratch.copyFrom(n);
+                n.add(this.scratch);
+                if (n.compareTo(this.m) >= 0) {
+                    n.subtract(this.m);
+                }
+            }
+        }
+    }
+
+    /**
+     * Chooses the sliding window width for an exponent of the given length.
+     *
+     * @param bitLength
+     *            number of bits in the exponent
+     * @return window width
+     * @ensures 1 <= windowSize <= 5
+     */
+    private static int windowSize(int bitLength) {
+        final int[] limits = { 8, 24, 80, 240 };
+        int window = 1;
+        while (window <= limits.length && bitLength > limits[window - 1]) {
+            window++;
+        }
+        return window;
+    }
+
+    /**
+     * Returns the binary digits of {@code p}, least significant first.
+     *
+     * @param p
+     *            the number
+     * @return bits of p, with no leading (high-order) zero bits
+     * @ensures [bitsOf is the base-2 representation of p]
+     */
+    static boolean[] bitsOf(NaturalNumber p) {
+        /*
+         * Unload the decimal digits into an int array (most significant
+         * first), then halve that array repeatedly, collecting remainders
+         */
+        NaturalNumber copyP = p.newInstance();
+        copyP.copyFrom(p);
+        int length = 0;
+        int[] digits = new int[RADIX];
+        while (!copyP.isZero()) {
+            if (length == digits.length) {
+                int[] bigger = new int[2 * digits.length];
+                System.arraycopy(digits, 0, bigger, 0, length);
+                digits = bigger;
+            }
+            digits[length] = copyP.divideBy10();
+            length++;
+        }
+        int[] decimal = new int[length];
+        for (int i = 0; i < length; i++) {
+            decimal[i] = digits[length - 1 - i];
+        }
+
+        final double bitsPerDigit = 3.33;
+        boolean[] bits = new boolean[(int) (length * bitsPerDigit) + 1];
+        int bitCount = 0;
+        int start = 0;
+        while (start < decimal.length) {
+            int remainder = 0;
+            for (int i = start; i < decimal.length; i++) {
+                int current = remainder * RADIX + decimal[i];
+                decimal[i] = current / 2;
+                remainder = current % 2;
+            }
+            bits[bitCount] = remainder == 1;
+            bitCount++;
+            while (start < decimal.length && decimal[start] == 0) {
+                start++;
+            }
+        }
+        boolean[] result = new boolean[bitCount];
+        System.arraycopy(bits, 0, result, 0, bitCount);
+        return result;
+    }
+
+}
@@ -0,0 +1,843 @@
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumberSecondary;
+
+/**
+ * {@code NaturalNumber} represented as an array of base-2^32 limbs, least
+ * significant first. Unlike {@code NaturalNumber2}, which works one decimal
+ * digit at a time, this implementation overrides the arithmetic secondary
+ * methods with word-level algorithms: parity, bit length and shifts are O(1)
+ * or O(limbs); comparison allocates nothing; add, subtract, increment and
+ * decrement work in place; multiply (see {@code LimbMultiplier}) allocates
+ * one limb array below the Karatsuba threshold; and divide allocates the
+ * quotient, the normalized operands and the remainder.
+ *
+ * @convention <pre>
+ * 0 <= length <= limbs.length  and
+ * [if length > 0 then limbs[length - 1] /= 0]
+ * </pre>
+ * @correspondence <pre>
+ * this = [sum of (limbs[i] as unsigned) * 2^(32 i) for i in [0, length)]
+ * </pre>
+ *
+ * @author Ayman Abumaike
+ *
+ */
+public class NaturalNumber4 extends NaturalNumberSecondary {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Mask that turns an int limb into its unsigned value.
+     */
+    private static final long MASK = 0xFFFFFFFFL;
+
+    /**
+     * Bits per limb.
+     */
+    private static final int LIMB_BITS = 32;
+
+    /**
+     * Radix of the kernel digits.
+     */
+    private static final int RADIX = 10;
+
+    /**
+     * Largest power of 10 that fits in an int, used to convert to and from
+     * decimal nine digits at a time.
+     */
+    private static final int CHUNK = 1000000000;
+
+    /**
+     * Number of decimal digits in CHUNK.
+     */
+    private static final int CHUNK_DIGITS = 9;
+
+    /**
+     * Initial capacity of the limb array.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Limbs, least significant first.
+     */
+    private int[] limbs;
+
+    /**
+     * Number of limbs in use.
+     */
+    private int length;
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+        this.limbs = new int[INITIAL_CAPACITY];
+        this.length = 0;
+    }
+
+    /**
+     * Makes sure limbs can hold at least {@code capacity} limbs, keeping the
+     * current value.
+     *
+     * @param capacity
+     *            limbs needed
+     */
+    private void ensureCapacity(int capacity) {
+        if (this.limbs.length < capacity) {
+            int[] bigger = new int[Math.max(capacity, 2 * this.limbs.length)];
+            System.arraycopy(this.limbs, 0, bigger, 0, this.length);
+            this.limbs = bigger;
+        }
+    }
+
+    /**
+     * Drops leading zero limbs so the convention holds again.
+     */
+    private void normalize() {
+        while (this.length > 0 && this.limbs[this.length - 1] == 0) {
+            this.length--;
+        }
+    }
+
+    /**
+     * Updates this to this * mul + add.
+     *
+     * @param mul
+     *            small multiplier
+     * @param add
+     *            small addend
+     * @requires 0 <= mul and 0 <= add
+     */
+    private void multiplyAddSmall(int mul, int add) {
+        long carry = add;
+        for (int i = 0; i < this.length; i++) {
+            long t = (this.limbs[i] & MASK) * mul + carry;
+            this.limbs[i] = (int) t;
+            carry = t >>> LIMB_BITS;
+        }
+        if (carry != 0) {
+            this.ensureCapacity(this.length + 1);
+            this.limbs[this.length] = (int) carry;
+            this.length++;
+        }
+    }
+
+    /**
+     * Updates this to this / d and returns this mod d.
+     *
+     * @param d
+     *            small divisor
+     * @return remainder
+     * @requires d > 0
+     */
+    private int divideSmall(int d) {
+        long remainder = 0;
+        for (int i = this.length - 1; i >= 0; i--) {
+            long t = (remainder << LIMB_BITS) | (this.limbs[i] & MASK);
+            this.limbs[i] = (int) (t / d);
+            remainder = t % d;
+        }
+        this.normalize();
+        return (int) remainder;
+    }
+
+    /**
+     * Returns {@code n} as a {@code NaturalNumber4}, converting only if it has
+     * a different dynamic type.
+     *
+     * @param n
+     *            the number
+     * @return n itself, or a {@code NaturalNumber4} with the same value
+     */
+    private static NaturalNumber4 asLimbs(NaturalNumber n) {
+        NaturalNumber4 result;
+        if (n instanceof NaturalNumber4) {
+            result = (NaturalNumber4) n;
+        } else {
+            result = new NaturalNumber4(n.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Compares the first {@code aLength} limbs of a with the first
+     * {@code bLength} limbs of b.
+     *
+     * @param a
+     *            first number's limbs
+     * @param aLength
+     *            first number's length
+     * @param b
+     *            second number's limbs
+     * @param bLength
+     *            second number's length
+     * @return negative, zero, or positive as a is less than, equal to, or
+     *         greater than b
+     */
+    private static int compare(int[] a, int aLength, int[] b, int bLength) {
+        int result = Integer.compare(aLength, bLength);
+        int i = aLength - 1;
+        while (result == 0 && i >= 0) {
+            result = Integer.compareUnsigned(a[i], b[i]);
+            i--;
+        }
+        return result;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public NaturalNumber4() {
+        this.createNewRep();
+    }
+
+    /**
+     * Constructor from {@code int}.
+     *
+     * @param i
+     *            {@code int} to initialize from
+     */
+    public NaturalNumber4(int i) {
+        assert i >= 0 : "Violation of: i >= 0";
+        this.createNewRep();
+        this.setFromInt(i);
+    }
+
+    /**
+     * Constructor from {@code String}.
+     *
+     * @param s
+     *            {@code String} to initialize from
+     */
+    public NaturalNumber4(String s) {
+        assert s != null : "Violation of: s is not null";
+        assert s.matches("0|[1-9]\\d*") : ""
+                + "Violation of: there exists n: NATURAL (s = TO_STRING(n))";
+        this.createNewRep();
+        /*
+         * Nine digits at a time; the first chunk takes whatever is left over
+         */
+        int end = s.length() % CHUNK_DIGITS;
+        if (end == 0) {
+            end = CHUNK_DIGITS;
+        }
+        int start = 0;
+        while (start < s.length()) {
+            this.multiplyAddSmall(CHUNK,
+                    Integer.parseInt(s.substring(start, end)));
+            start = end;
+            end += CHUNK_DIGITS;
+        }
+        this.normalize();
+    }
+
+    /**
+     * Constructor from {@code NaturalNumber}.
+     *
+     * @param n
+     *            {@code NaturalNumber} to initialize from
+     */
+    public NaturalNumber4(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        this.createNewRep();
+        this.copyFrom(n);
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public final NaturalNumber newInstance() {
+        return new NaturalNumber4();
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(NaturalNumber source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof NaturalNumber4 : ""
+                + "Violation of: source is of dynamic type NaturalNumber4";
+        NaturalNumber4 localSource = (NaturalNumber4) source;
+        this.limbs = localSource.limbs;
+        this.length = localSource.length;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void multiplyBy10(int k) {
+        assert 0 <= k : "Violation of: 0 <= k";
+        assert k < RADIX : "Violation of: k < 10";
+        this.multiplyAddSmall(RADIX, k);
+    }
+
+    @Override
+    public final int divideBy10() {
+        return this.divideSmall(RADIX);
+    }
+
+    @Override
+    public final boolean isZero() {
+        return this.length == 0;
+    }
+
+    /*
+     * Overridden secondary methods -------------------------------------------
+     */
+
+    @Override
+    public final void setFromInt(int i) {
+        assert i >= 0 : "Violation of: i >= 0";
+        this.length = 0;
+        if (i > 0) {
+            this.limbs[0] = i;
+            this.length = 1;
+        }
+    }
+
+    @Override
+    public final boolean canConvertToInt() {
+        return this.length == 0 || (this.length == 1 && this.limbs[0] >= 0);
+    }
+
+    @Override
+    public final int toInt() {
+        assert this.canConvertToInt() : ""
+                + "Violation of: this <= Integer.MAX_VALUE";
+        int result = 0;
+        if (this.length == 1) {
+            result = this.limbs[0];
+        }
+        return result;
+    }
+
+    @Override
+    public final void copyFrom(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        if (n != this) {
+            NaturalNumber4 source = asLimbs(n);
+            this.limbs = new int[Math.max(source.length, INITIAL_CAPACITY)];
+            System.arraycopy(source.limbs, 0, this.limbs, 0, source.length);
+            this.length = source.length;
+        }
+    }
+
+    @Override
+    public final int compareTo(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        NaturalNumber4 other = asLimbs(n);
+        return compare(this.limbs, this.length, other.limbs, other.length);
+    }
+
+    @Override
+    public final boolean equals(Object obj) {
+        boolean result = obj == this;
+        if (!result && obj instanceof NaturalNumber) {
+            result = this.compareTo((NaturalNumber) obj) == 0;
+        }
+        return result;
+    }
+
+    @Override
+    public final int hashCode() {
+        /*
+         * Must agree with the hash code of equal numbers of other dynamic
+         * types, so it is left to the secondary implementation
+         */
+        return super.hashCode();
+    }
+
+    @Override
+    public final void increment() {
+        int i = 0;
+        boolean carry = true;
+        while (carry && i < this.length) {
+            this.limbs[i]++;
+            carry = this.limbs[i] == 0;
+            i++;
+        }
+        if (carry) {
+            this.ensureCapacity(this.length + 1);
+            this.limbs[this.length] = 1;
+            this.length++;
+        }
+    }
+
+    @Override
+    public final void decrement() {
+        assert !this.isZero() : "Violation of: this > 0";
+        int i = 0;
+        boolean borrow = true;
+        while (borrow) {
+            borrow = this.limbs[i] == 0;
+            this.limbs[i]--;
+            i++;
+        }
+        this.normalize();
+    }
+
+    @Override
+    public final void add(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        NaturalNumber4 other = asLimbs(n);
+        int otherLength = other.length;
+        int[] otherLimbs = other.limbs;
+        int longer = Math.max(this.length, otherLength);
+        this.ensureCapacity(longer + 1);
+        for (int i = this.length; i < longer; i++) {
+            this.limbs[i] = 0;
+        }
+        long carry = 0;
+        for (int i = 0; i < longer; i++) {
+            long t = (this.limbs[i] & MASK) + carry;
+            if (i < otherLength) {
+                t += otherLimbs[i] & MASK;
+            }
+            this.limbs[i] = (int) t;
+            carry = t >>> LIMB_BITS;
+        }
+        this.length = longer;
+        if (carry != 0) {
+            this.limbs[this.length] = (int) carry;
+            this.length++;
+        }
+    }
+
+    @Override
+    public final void subtract(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        assert this.compareTo(n) >= 0 : "Violation of: this >= n";
+        NaturalNumber4 other = asLimbs(n);
+        long borrow = 0;
+        int i = 0;
+        while (i < other.length || borrow != 0) {
+            long t = (this.limbs[i] & MASK) - borrow;
+            if (i < other.length) {
+                t -= other.limbs[i] & MASK;
+            }
+            this.limbs[i] = (int) t;
+            borrow = (t >> LIMB_BITS) & 1;
+            i++;
+        }
+        this.normalize();
+    }
+
+    @Override
+    public final void multiply(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        NaturalNumber4 other = asLimbs(n);
+        if (this.length == 0 || other.length == 0) {
+            this.length = 0;
+        } else {
+            /*
+             * Squares (by identity or by value) take the squaring path, which
+             * is what powerMod and power do most of the time
+             */
+            int[] product;
+            if (other == this || compare(this.limbs, this.length,
+                    other.limbs, other.length) == 0) {
+                product = LimbMultiplier.square(this.limbs, this.length);
+            } else {
+                product = LimbMultiplier.multiply(this.limbs, this.length,
+                        other.limbs, other.length);
+            }
+            this.limbs = product;
+            this.length = product.length;
+            this.normalize();
+        }
+    }
+
+    @Override
+    public final NaturalNumber divide(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        assert !n.isZero() : "Violation of: n > 0";
+        NaturalNumber4 divisor = asLimbs(n);
+        NaturalNumber4 remainder = new NaturalNumber4();
+        if (compare(this.limbs, this.length, divisor.limbs,
+                divisor.length) < 0) {
+            remainder.transferFrom(this);
+        } else if (divisor.length == 1) {
+            remainder.setFromInt(0);
+            long d = divisor.limbs[0] & MASK;
+            long r = 0;
+            for (int i = this.length - 1; i >= 0; i--) {
+                long t = (r << LIMB_BITS) | (this.limbs[i] & MASK);
+                this.limbs[i] = (int) Long.divideUnsigned(t, d);
+                r = Long.remainderUnsigned(t, d);
+            }
+            this.normalize();
+            remainder.limbs[0] = (int) r;
+            remainder.length = 1;
+            remainder.normalize();
+        } else {
+            this.divideLong(divisor, remainder);
+        }
+        return remainder;
+    }
+
+    /**
+     * Knuth's Algorithm D: updates this to this / divisor and sets remainder
+     * to this mod divisor.
+     *
+     * @param divisor
+     *            the divisor
+     * @param remainder
+     *            the remainder (on return)
+     * @requires divisor.length >= 2 and this >= divisor
+     */
+    private void divideLong(NaturalNumber4 divisor, NaturalNumber4 remainder) {
+        final long base = 1L << LIMB_BITS;
+        int n = divisor.length;
+        int m = this.length;
+        /*
+         * Normalize so the top limb of the divisor has its high bit set
+         */
+        int shift = Integer.numberOfLeadingZeros(divisor.limbs[n - 1]);
+        int[] v = new int[n];
+        int[] u = new int[m + 1];
+        shiftLimbsLeft(divisor.limbs, n, shift, v);
+        u[m] = shiftLimbsLeft(this.limbs, m, shift, u);
+        int[] q = new int[m - n + 1];
+        long vTop = v[n - 1] & MASK;
+        long vNext = v[n - 2] & MASK;
+        for (int j = m - n; j >= 0; j--) {
+            /*
+             * Estimate the quotient digit from the top two limbs, then correct
+             * it (at most twice) using the next divisor limb
+             */
+            long top = ((u[j + n] & MASK) << LIMB_BITS) | (u[j + n - 1] & MASK);
+            long qHat = Long.divideUnsigned(top, vTop);
+            long rHat = Long.remainderUnsigned(top, vTop);
+            while (qHat >= base || Long.compareUnsigned(qHat * vNext,
+                    (rHat << LIMB_BITS) | (u[j + n - 2] & MASK)) > 0) {
+                qHat--;
+                rHat += vTop;
+                if (rHat >= base) {
+                    break;
+                }
+            }
+            /*
+             * Multiply and subtract qHat * v from u[j, j + n]
+             */
+            long borrow = 0;
+            for (int i = 0; i < n; i++) {
+                long p = qHat * (v[i] & MASK);
+                long t = (u[i + j] & MASK) - borrow - (p & MASK);
+                u[i + j] = (int) t;
+                borrow = (p >>> LIMB_BITS) - (t >> LIMB_BITS);
+            }
+            long t = (u[j + n] & MASK) - borrow;
+            u[j + n] = (int) t;
+            if (t < 0) {
+                /*
+                 * qHat was one too large; add v back
+                 */
+                qHat--;
+                long carry = 0;
+                for (int i = 0; i < n; i++) {
+                    long s = (u[i + j] & MASK) + (v[i] & MASK) + carry;
+                    u[i + j] = (int) s;
+                    carry = s >>> LIMB_BITS;
+                }
+                u[j + n] += (int) carry;
+            }
+            q[j] = (int) qHat;
+        }
+        /*
+         * Un-normalize the remainder
+         */
+        remainder.limbs = new int[Math.max(n, INITIAL_CAPACITY)];
+        for (int i = 0; i < n; i++) {
+            long lo = (u[i] & MASK) >>> shift;
+            long hi = 0;
+            if (shift > 0) {
+                hi = (u[i + 1] & MASK) << (LIMB_BITS - shift);
+            }
+            remainder.limbs[i] = (int) (lo | hi);
+        }
+        remainder.length = n;
+        remainder.normalize();
+        this.limbs = q;
+        this.length = q.length;
+        this.normalize();
+    }
+
+    /**
+     * Copies the first {@code length} limbs of {@code source} into
+     * {@code target} shifted left by {@code shift} bits, and returns the bits
+     * shifted out of the top.
+     *
+     * @param source
+     *            limbs to shift
+     * @param length
+     *            number of limbs to shift
+     * @param shift
+     *            number of bits
+     * @param target
+     *            destination, at least length limbs long
+     * @return the overflow limb
+     * @requires 0 <= shift < 32
+     */
+    private static int shiftLimbsLeft(int[] source, int length, int shift,
+            int[] target) {
+        int overflow = 0;
+        for (int i = 0; i < length; i++) {
+            int limb = source[i];
+            target[i] = (limb << shift) | overflow;
+            if (shift > 0) {
+                overflow = limb >>> (LIMB_BITS - shift);
+            }
+        }
+        return overflow;
+    }
+
+    @Override
+    public final void power(int p) {
+        assert p >= 0 : "Violation of: p >= 0";
+        NaturalNumber4 base = new NaturalNumber4();
+        base.transferFrom(this);
+        this.setFromInt(1);
+        int bit = Integer.SIZE - 1 - Integer.numberOfLeadingZeros(p);
+        for (; bit >= 0; bit--) {
+            this.multiply(this);
+            if (((p >>> bit) & 1) == 1) {
+                this.multiply(base);
+            }
+        }
+    }
+
+    @Override
+    public final String toString() {
+        StringBuilder result = new StringBuilder();
+        if (this.length == 0) {
+            result.append('0');
+        } else {
+            /*
+             * Peel off nine decimal digits at a time from a copy
+             */
+            NaturalNumber4 copy = new NaturalNumber4(this);
+            int[] chunks = new int[this.length * 2 + 1];
+            int count = 0;
+            while (!copy.isZero()) {
+                chunks[count] = copy.divideSmall(CHUNK);
+                count++;
+            }
+            result.append(chunks[count - 1]);
+            for (int i = count - 2; i >= 0; i--) {
+                String chunk = Integer.toString(chunks[i]);
+                for (int k = chunk.length(); k < CHUNK_DIGITS; k++) {
+                    result.append('0');
+                }
+                result.append(chunk);
+            }
+        }
+        return result.toString();
+    }
+
+    /*
+     * Additional methods -----------------------------------------------------
+     */
+
+    /**
+     * Reports whether this is even, without changing it.
+     *
+     * @return true iff this is even
+     * @ensures isEven = (this mod 2 = 0)
+     */
+    public final boolean isEven() {
+        return this.length == 0 || (this.limbs[0] & 1) == 0;
+    }
+
+    /**
+     * Sets this to the value of a {@code long}.
+     *
+     * @param v
+     *            the value
+     * @replaces this
+     * @requires v >= 0
+     * @ensures this = v
+     */
+    public final void setFromLong(long v) {
+        assert v >= 0 : "Violation of: v >= 0";
+        this.ensureCapacity(2);
+        this.limbs[0] = (int) v;
+        this.limbs[1] = (int) (v >>> LIMB_BITS);
+        this.length = 2;
+        this.normalize();
+    }
+
+    /**
+     * Reports the value of this as a {@code long}.
+     *
+     * @return the value of this
+     * @requires this <= Long.MAX_VALUE
+     * @ensures toLong = this
+     */
+    public final long toLong() {
+        assert this.bitLength() < 2 * LIMB_BITS : ""
+                + "Violation of: this <= Long.MAX_VALUE";
+        long result = 0;
+        if (this.length > 0) {
+            result = this.limbs[0] & MASK;
+        }
+        if (this.length > 1) {
+            result |= (long) this.limbs[1] << LIMB_BITS;
+        }
+        return result;
+    }
+
+    /**
+     * Reports the number of bits in the binary representation of this.
+     *
+     * @return bit length of this
+     * @ensures <pre>
+     * if this = 0 then bitLength = 0
+     *  else 2^(bitLength - 1) <= this < 2^(bitLength)
+     * </pre>
+     */
+    public final int bitLength() {
+        int result = 0;
+        if (this.length > 0) {
+            result = this.length * LIMB_BITS
+                    - Integer.numberOfLeadingZeros(this.limbs[this.length - 1]);
+        }
+        return result;
+    }
+
+    /**
+     * Reports the index of the lowest 1 bit of this, i.e., the number of
+     * factors of 2 in this.
+     *
+     * @return index of the lowest 1 bit
+     * @requires this > 0
+     * @ensures <pre>
+     * (this / 2^getLowestSetBit) mod 2 = 1  and
+     * this mod 2^getLowestSetBit = 0
+     * </pre>
+     */
+    public final int getLowestSetBit() {
+        assert !this.isZero() : "Violation of: this > 0";
+        int i = 0;
+        while (this.limbs[i] == 0) {
+            i++;
+        }
+        return i * LIMB_BITS + Integer.numberOfTrailingZeros(this.limbs[i]);
+    }
+
+    /**
+     * Reports bit {@code k} of this.
+     *
+     * @param k
+     *            bit index
+     * @return true iff bit k of this is 1
+     * @requires k >= 0
+     * @ensures testBit = ((this / 2^k) mod 2 = 1)
+     */
+    public final boolean testBit(int k) {
+        assert k >= 0 : "Violation of: k >= 0";
+        int limb = k / LIMB_BITS;
+        return limb < this.length
+                && ((this.limbs[limb] >>> (k % LIMB_BITS)) & 1) == 1;
+    }
+
+    /**
+     * Multiplies this by 2^k.
+     *
+     * @param k
+     *            number of bits to shift
+     * @updates this
+     * @requires k >= 0
+     * @ensures this = #this * 2^k
+     */
+    public final void shiftLeft(int k) {
+        assert k >= 0 : "Violation of: k >= 0";
+        if (this.length > 0) {
+            int limbShift = k / LIMB_BITS;
+            int bitShift = k % LIMB_BITS;
+            int[] shifted = new int[this.length + limbShift + 1];
+            int overflow = 0;
+            for (int i = 0; i < this.length; i++) {
+                int limb = this.limbs[i];
+                shifted[i + limbShift] = (limb << bitShift) | overflow;
+                if (bitShift > 0) {
+                    overflow = limb >>> (LIMB_BITS - bitShift);
+                }
+            }
+            shifted[this.length + limbShift] = overflow;
+            this.limbs = shifted;
+            this.length = shifted.length;
+            this.normalize();
+        }
+    }
+
+    /**
+     * Divides this by 2^k, discarding the remainder.
+     *
+     * @param k
+     *            number of bits to shift
+     * @updates this
+     * @requires k >= 0
+     * @ensures this = #this / 2^k
+     */
+    public final void shiftRight(int k) {
+        assert k >= 0 : "Violation of: k >= 0";
+        int limbShift = k / LIMB_BITS;
+        int bitShift = k % LIMB_BITS;
+        if (limbShift >= this.length) {
+            this.length = 0;
+        } else {
+            int newLength = this.length - limbShift;
+            for (int i = 0; i < newLength; i++) {
+                long lo = (this.limbs[i + limbShift] & MASK) >>> bitShift;
+                long hi = 0;
+                if (bitShift > 0 && i + limbShift + 1 < this.length) {
+                    hi = (this.limbs[i + limbShift + 1] & MASK) << (LIMB_BITS
+                            - bitShift);
+                }
+                this.limbs[i] = (int) (lo | hi);
+            }
+            this.length = newLength;
+            this.normalize();
+        }
+    }
+
+    /**
+     * Keeps only the {@code k} low-order bits of this.
+     *
+     * @param k
+     *            number of bits to keep
+     * @updates this
+     * @requires k >= 0
+     * @ensures this = #this mod 2^k
+     */
+    public final void truncate(int k) {
+        assert k >= 0 : "Violation of: k >= 0";
+        int limbCount = k / LIMB_BITS;
+        int bitCount = k % LIMB_BITS;
+        if (limbCount < this.length) {
+            if (bitCount > 0) {
+                this.limbs[limbCount] &= (1 << bitCount) - 1;
+                this.length = limbCount + 1;
+            } else {
+                this.length = limbCount;
+            }
+            this.normalize();
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Parallel version of {@code CryptoUtilities2.generateNextLikelyPrime}. The
+ * sieve survivors are taken in batches; within a batch, worker w tests the
+ * candidates at indices w, w + P, w + 2P, ... (P = parallelism) in increasing
+ * order, and every worker stops as soon as a likely prime has been confirmed
+ * at a smaller index than the one it is testing, even in the middle of that
+ * candidate's Miller-Rabin rounds. The smallest likely prime of the first
+ * batch that contains one is the answer, so the result is the same as that
+ * of the sequential search.
+ *
+ * @author Ayman Abumaike
+ *
+ */
+final class ParallelPrimeSearch {
+
+    /**
+     * Candidates per worker in one batch.
+     */
+    private static final int CANDIDATES_PER_WORKER = 4;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private ParallelPrimeSearch() {
+    }
+
+    /**
+     * Generates the smallest likely prime at least as large as n, testing
+     * candidates on {@code parallelism} threads.
+     *
+     * @param n
+     *            minimum value of likely prime
+     * @param parallelism
+     *            number of worker threads
+     * @updates n
+     * @requires n > 1 and parallelism > 0
+     * @ensures <pre>
+     * n >= #n and [n is very likely a prime number] and
+     * [n is the smallest number >= #n reported prime by isPrime2]
+     * </pre>
+     */
+    static void generateNextLikelyPrime(NaturalNumber n, int parallelism) {
+        CandidateSieve sieve = new CandidateSieve(n);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            NaturalNumber[] batch = new NaturalNumber[parallelism
+                    * CANDIDATES_PER_WORKER];
+            boolean found = false;
+            while (!found) {
+                for (int i = 0; i < batch.length; i++) {
+                    batch[i] = n.newInstance();
+                    sieve.next(batch[i]);
+                }
+                int best = searchBatch(pool, batch, parallelism);
+                if (best < batch.length) {
+                    n.transferFrom(batch[best]);
+                    found = true;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Tests the candidates in {@code batch} on {@code pool} and returns the
+     * index of the smallest one that is likely prime.
+     *
+     * @param pool
+     *            the workers
+     * @param batch
+     *            candidates, in increasing order
+     * @param parallelism
+     *            number of interleaved strides
+     * @return index of the first likely prime in batch, or batch.length if
+     *         there is none
+     */
+    private static int searchBatch(ForkJoinPool pool,
+            final NaturalNumber[] batch, final int parallelism) {
+        final AtomicInteger best = new AtomicInteger(batch.length);
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int w = 0; w < parallelism; w++) {
+            final int first = w;
+            workers.add(() -> {
+                /*
+                 * Candidates beyond the best index so far cannot win, so the
+                 * stride is abandoned as soon as it passes that index, and
+                 * a test in progress is abandoned between witness rounds
+                 * once another worker confirms a smaller index
+                 */
+                int i = first;
+                while (i < best.get()) {
+                    final int index = i;
+                    if (CryptoUtilities2.isPrime2(batch[index],
+                            () -> best.get() < index)) {
+                        best.accumulateAndGet(index, Math::min);
+                    }
+                    i += parallelism;
+                }
+                return null;
+            });
+        }
+        for (Future<Void> result : pool.invokeAll(workers)) {
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                /*
+                 * The interrupt is kept for the caller
+                 */
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return best.get();
+    }
+
+}
@@ -0,0 +1,203 @@
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Batch version of {@code CryptoUtilities2.isPrime2}. The trial-division
+ * table is built once and shared by the whole batch; numbers that fit in a
+ * {@code long} go straight to {@code LongArithmetic}, the rest are trial
+ * divided and only the survivors get Miller-Rabin. The batch is split into
+ * blocks of 64 numbers on a ForkJoinPool, and each block fills its own word of
+ * the result, so no two workers ever write to the same word.
+ *
+ * @author Ayman Abumaike
+ *
+ */
+final class PrimalityBatch {
+
+    /**
+     * Odd primes used for trial division of numbers that do not fit in a
+     * long.
+     */
+    private static final int TRIAL_PRIME_COUNT = 256;
+
+    /**
+     * The trial-division table, shared by every batch.
+     */
+    private static final int[] TRIAL_PRIMES = CandidateSieve
+            .smallPrimes(TRIAL_PRIME_COUNT);
+
+    /**
+     * Numbers per block, i.e., bits per result word.
+     */
+    private static final int BLOCK = Long.SIZE;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private PrimalityBatch() {
+    }
+
+    /**
+     * Reports which of the given numbers are (likely) prime.
+     *
+     * @param numbers
+     *            the numbers to be checked
+     * @param parallelism
+     *            number of worker threads
+     * @return bit i is set iff the i-th number (in iteration order) is
+     *         reported prime by isPrime2
+     * @requires [every number in numbers > 1] and parallelism > 0
+     */
+    static BitSet isPrimeBatch(Collection<? extends NaturalNumber> numbers,
+            int parallelism) {
+        BitSet result;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            result = isPrimeBatch(numbers, pool);
+        } finally {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    /**
+     * Reports which of the given numbers are (likely) prime, testing them on
+     * an existing pool. This may be called from a task running on pool, in
+     * which case the calling worker takes part in the batch.
+     *
+     * @param numbers
+     *            the numbers to be checked
+     * @param pool
+     *            the workers
+     * @return bit i is set iff the i-th number (in iteration order) is
+     *         reported prime by isPrime2
+     * @requires [every number in numbers > 1]
+     */
+    static BitSet isPrimeBatch(Collection<? extends NaturalNumber> numbers,
+            ForkJoinPool pool) {
+        /*
+         * Private copies, made on this thread, so the workers never touch
+         * the caller's numbers (which may even appear more than once)
+         */
+        NaturalNumber[] batch = new NaturalNumber[numbers.size()];
+        int i = 0;
+        for (NaturalNumber n : numbers) {
+            batch[i] = n.newInstance();
+            batch[i].copyFrom(n);
+            i++;
+        }
+        long[] words = new long[(batch.length + BLOCK - 1) / BLOCK];
+        pool.invoke(new Blocks(batch, words, 0, words.length));
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Reports whether n is (likely) prime, with the same answer as isPrime2.
+     *
+     * @param n
+     *            number to be checked
+     * @return true iff isPrime2(n)
+     * @requires n > 1
+     */
+    private static boolean isPrime(NaturalNumber n) {
+        boolean isPrime;
+        long value = LongArithmetic.toLongIfFits(n);
+        if (value >= 0) {
+            isPrime = LongArithmetic.isPrime(value);
+        } else if (CryptoUtilities2.isEven(n)) {
+            isPrime = false;
+        } else {
+            /*
+             * n is larger than every trial prime, so any zero residue means
+             * n is composite
+             */
+            int[] residues = CandidateSieve.residues(n, TRIAL_PRIMES);
+            isPrime = true;
+            int i = 0;
+            while (isPrime && i < residues.length) {
+                isPrime = residues[i] != 0;
+                i++;
+            }
+            if (isPrime) {
+                isPrime = CryptoUtilities2.isPrime2(n);
+            }
+        }
+        return isPrime;
+    }
+
+    /**
+     * Tests the numbers of the blocks [from, to), splitting the range in half
+     * until it is a single block.
+     */
+    private static final class Blocks extends RecursiveAction {
+
+        /**
+         * Serialization identifier.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * All the numbers of the batch.
+         */
+        private final NaturalNumber[] batch;
+
+        /**
+         * Result words, one per block.
+         */
+        private final long[] words;
+
+        /**
+         * First block of this task.
+         */
+        private final int from;
+
+        /**
+         * One past the last block of this task.
+         */
+        private final int to;
+
+        /**
+         * Constructor.
+         *
+         * @param batch
+         *            all the numbers of the batch
+         * @param words
+         *            result words, one per block
+         * @param from
+         *            first block
+         * @param to
+         *            one past the last block
+         */
+        Blocks(NaturalNumber[] batch, long[] words, int from, int to) {
+            this.batch = batch;
+            this.words = words;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > 1) {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new Blocks(this.batch, this.words, this.from, middle),
+                        new Blocks(this.batch, this.words, middle, this.to));
+            } else if (this.to > this.from) {
+                long word = 0;
+                int first = this.from * BLOCK;
+                int last = Math.min(first + BLOCK, this.batch.length);
+                for (int i = first; i < last; i++) {
+                    if (isPrime(this.batch[i])) {
+                        word |= 1L << (i - first);
+                    }
+                }
+                this.words[this.from] = word;
+            }
+        }
+
+    }
+
+}
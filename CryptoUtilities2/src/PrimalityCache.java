@@ -0,0 +1,319 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Bounded cache of primality verdicts, for callers that test the same
+ * numbers again and again. Once installed with
+ * {@code CryptoUtilities2.setPrimalityCache}, {@code isPrime2} looks a number
+ * up here before running Miller-Rabin, and records the verdict after; a hit
+ * skips the witness loop entirely. Numbers that fit in a {@code long} are
+ * never cached, since testing them is cheaper than hashing them.
+ *
+ * <p>
+ * Entries are evicted in least-recently-used order once the capacity is
+ * reached. A number is keyed by two 61-bit polynomial hashes of its decimal
+ * digits (modulo the prime 2^61 - 1, with bases drawn at random when the cache
+ * is created), so every entry takes the same small amount of memory however
+ * large the number is, and two different numbers of d digits share a key with
+ * probability below (d / 2^60)^2. All methods are thread-safe.
+ * </p>
+ *
+ * @author Ayman Abumaike
+ *
+ */
+public final class PrimalityCache {
+
+    /**
+     * The Mersenne prime 2^61 - 1, modulus of the hashes.
+     */
+    private static final long MODULUS = (1L << 61) - 1;
+
+    /**
+     * Number of bits of MODULUS.
+     */
+    private static final int MODULUS_BITS = 61;
+
+    /**
+     * Decimal digits folded into a hash at a time (10^18 < 2^61 - 1).
+     */
+    private static final int CHUNK_DIGITS = 18;
+
+    /**
+     * Useful constant, not a magic number: 10.
+     */
+    private static final int RADIX = 10;
+
+    /**
+     * Initial table size of the map.
+     */
+    private static final int INITIAL_TABLE_SIZE = 16;
+
+    /**
+     * Load factor of the map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * Key of one number: two independent hashes of its digits.
+     */
+    private static final class Key {
+
+        /**
+         * Hash with the first base.
+         */
+        private final long first;
+
+        /**
+         * Hash with the second base.
+         */
+        private final long second;
+
+        /**
+         * Constructor.
+         *
+         * @param first
+         *            hash with the first base
+         * @param second
+         *            hash with the second base
+         */
+        Key(long first, long second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            boolean result = obj == this;
+            if (obj instanceof Key) {
+                Key other = (Key) obj;
+                result = this.first == other.first
+                        && this.second == other.second;
+            }
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(this.first ^ this.second);
+        }
+
+    }
+
+    /**
+     * Maximum number of entries.
+     */
+    private final int capacity;
+
+    /**
+     * Base of the first hash.
+     */
+    private final long firstBase;
+
+    /**
+     * Base of the second hash.
+     */
+    private final long secondBase;
+
+    /**
+     * Verdicts, least recently used first; guarded by this.
+     */
+    private final LinkedHashMap<Key, Boolean> entries;
+
+    /**
+     * Number of lookups that found their number; guarded by this.
+     */
+    private long hits;
+
+    /**
+     * Number of lookups that did not find their number; guarded by this.
+     */
+    private long misses;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity
+     *            maximum number of entries
+     * @requires capacity > 0
+     */
+    public PrimalityCache(int capacity) {
+        assert capacity > 0 : "Violation of: capacity > 0";
+
+        this.capacity = capacity;
+        SplittableRandom random = new SplittableRandom();
+        this.firstBase = random.nextLong(2, MODULUS - 1);
+        this.secondBase = random.nextLong(2, MODULUS - 1);
+        this.entries = new LinkedHashMap<Key, Boolean>(INITIAL_TABLE_SIZE,
+                LOAD_FACTOR, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Key, Boolean> eldest) {
+                return this.size() > PrimalityCache.this.capacity;
+            }
+
+        };
+    }
+
+    /**
+     * Returns x mod (2^61 - 1).
+     *
+     * @param x
+     *            the number, as an unsigned value
+     * @return x mod (2^61 - 1)
+     * @requires x < 2^63
+     */
+    private static long reduce(long x) {
+        long r = (x & MODULUS) + (x >>> MODULUS_BITS);
+        if (r >= MODULUS) {
+            r -= MODULUS;
+        }
+        return r;
+    }
+
+    /**
+     * Returns (h * base + chunk) mod (2^61 - 1).
+     *
+     * @param h
+     *            hash so far
+     * @param base
+     *            base of the hash
+     * @param chunk
+     *            next value folded in
+     * @return the new hash
+     * @requires h < 2^61 - 1 and base < 2^61 - 1 and chunk < 2^61 - 1
+     */
+    private static long fold(long h, long base, long chunk) {
+        /*
+         * h * base < 2^122; split it at bit 61, since 2^61 = 1 mod MODULUS
+         */
+        long high = Math.multiplyHigh(h, base);
+        long low = h * base;
+        long product = reduce((low & MODULUS)
+                + ((low >>> MODULUS_BITS) | (high << (Long.SIZE
+                        - MODULUS_BITS))));
+        return reduce(product + chunk);
+    }
+
+    /**
+     * Returns the key of n.
+     *
+     * @param n
+     *            the number
+     * @return the key of n
+     */
+    private Key keyOf(NaturalNumber n) {
+        String digits = n.toString();
+        long first = 0;
+        long second = 0;
+        long chunk = 0;
+        int inChunk = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            chunk = chunk * RADIX + (digits.charAt(i) - '0');
+            inChunk++;
+            if (inChunk == CHUNK_DIGITS) {
+                first = fold(first, this.firstBase, chunk);
+                second = fold(second, this.secondBase, chunk);
+                chunk = 0;
+                inChunk = 0;
+            }
+        }
+        /*
+         * The last (partial) chunk and the length, so that numbers whose
+         * chunks happen to be equal still get different keys
+         */
+        first = fold(fold(first, this.firstBase, chunk), this.firstBase,
+                digits.length());
+        second = fold(fold(second, this.secondBase, chunk), this.secondBase,
+                digits.length());
+        return new Key(first, second);
+    }
+
+    /**
+     * Returns the recorded verdict for n, counting a hit or a miss.
+     *
+     * @param n
+     *            the number
+     * @return TRUE if n was recorded as prime, FALSE if it was recorded as
+     *         composite, or null if n is not in this cache
+     */
+    public Boolean get(NaturalNumber n) {
+        Key key = this.keyOf(n);
+        synchronized (this) {
+            Boolean verdict = this.entries.get(key);
+            if (verdict == null) {
+                this.misses++;
+            } else {
+                this.hits++;
+            }
+            return verdict;
+        }
+    }
+
+    /**
+     * Records the verdict for n, evicting the least recently used entry if
+     * this cache is full.
+     *
+     * @param n
+     *            the number
+     * @param isPrime
+     *            whether n is (very likely) prime
+     */
+    public void put(NaturalNumber n, boolean isPrime) {
+        Key key = this.keyOf(n);
+        synchronized (this) {
+            this.entries.put(key, isPrime);
+        }
+    }
+
+    /**
+     * Removes all entries and resets the counters.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the maximum number of entries.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the number of lookups that found their number.
+     *
+     * @return the number of hits
+     */
+    public synchronized long hits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of lookups that did not find their number.
+     *
+     * @return the number of misses
+     */
+    public synchronized long misses() {
+        return this.misses;
+    }
+
+}
@@ -0,0 +1,263 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import components.naturalnumber.NaturalNumber;
+import components.simplereader.SimpleReader;
+import components.simplewriter.SimpleWriter;
+
+/**
+ * Non-interactive primality testing of a stream of numbers, one per line,
+ * for the batch mode of {@code CryptoUtilities2.main}. Lines are read in
+ * chunks, the valid numbers of each chunk are tested together by
+ * {@code PrimalityBatch} on a shared worker pool, and the verdicts are written
+ * in input order as the oldest chunk completes.
+ *
+ * <p>
+ * At most {@code CHUNKS_PER_WORKER} chunks per worker are in flight at any
+ * time; when the window is full, the reader waits for the oldest chunk before
+ * reading more. Memory therefore stays bounded by the window however long the
+ * input is, while the workers are kept busy with the chunks behind the one
+ * being waited for.
+ * </p>
+ *
+ * @author Ayman Abumaike
+ *
+ */
+final class PrimalityFileBatch {
+
+    /**
+     * Lines tested by one task.
+     */
+    private static final int CHUNK_LINES = 256;
+
+    /**
+     * Chunks in flight per worker.
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /**
+     * Nanoseconds per second, as a double.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private PrimalityFileBatch() {
+    }
+
+    /**
+     * Counts of the verdicts written so far.
+     */
+    private static final class Totals {
+
+        /**
+         * Lines tested.
+         */
+        private long lines;
+
+        /**
+         * Lines reported prime.
+         */
+        private long primes;
+
+        /**
+         * Lines that are not a natural number > 1.
+         */
+        private long invalid;
+
+    }
+
+    /**
+     * Returns the number on one input line, or null if the line is not a
+     * natural number greater than 1.
+     *
+     * @param line
+     *            the input line
+     * @param prototype
+     *            number whose implementation is used
+     * @return the number, or null
+     */
+    private static NaturalNumber parse(String line, NaturalNumber prototype) {
+        String text = line.trim();
+        NaturalNumber result = null;
+        if (prototype.canSetFromString(text)) {
+            NaturalNumber n = prototype.newInstance();
+            n.setFromString(text);
+            NaturalNumber two = prototype.newInstance();
+            two.setFromInt(2);
+            if (n.compareTo(two) >= 0) {
+                result = n;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the verdict lines for a chunk of input lines: each number
+     * followed by "prime" or "composite" according to isPrime2, or the line
+     * followed by "invalid" if it is not a natural number greater than 1. The
+     * valid numbers of the chunk are tested as one batch on pool.
+     *
+     * @param lines
+     *            the input lines
+     * @param prototype
+     *            number whose implementation is used
+     * @param pool
+     *            the workers
+     * @return the verdict lines, in the same order
+     */
+    private static String[] verdicts(String[] lines, NaturalNumber prototype,
+            ForkJoinPool pool) {
+        NaturalNumber[] parsed = new NaturalNumber[lines.length];
+        List<NaturalNumber> numbers = new ArrayList<>(lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            parsed[i] = parse(lines[i], prototype);
+            if (parsed[i] != null) {
+                numbers.add(parsed[i]);
+            }
+        }
+        BitSet isPrime = PrimalityBatch.isPrimeBatch(numbers, pool);
+        String[] result = new String[lines.length];
+        int k = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (parsed[i] == null) {
+                result[i] = lines[i].trim() + " invalid";
+            } else {
+                if (isPrime.get(k)) {
+                    result[i] = parsed[i] + " prime";
+                } else {
+                    result[i] = parsed[i] + " composite";
+                }
+                k++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads up to CHUNK_LINES lines from in.
+     *
+     * @param in
+     *            the input stream
+     * @return the lines read; empty iff in was at its end
+     * @updates in
+     */
+    private static String[] readChunk(SimpleReader in) {
+        String[] buffer = new String[CHUNK_LINES];
+        int count = 0;
+        while (count < CHUNK_LINES && !in.atEOS()) {
+            buffer[count] = in.nextLine();
+            count++;
+        }
+        String[] chunk = buffer;
+        if (count < CHUNK_LINES) {
+            chunk = new String[count];
+            System.arraycopy(buffer, 0, chunk, 0, count);
+        }
+        return chunk;
+    }
+
+    /**
+     * Waits for the oldest chunk in flight and writes its verdicts to out.
+     *
+     * @param inFlight
+     *            the chunks in flight, oldest first
+     * @param out
+     *            the output stream
+     * @param totals
+     *            counts of the verdicts written
+     * @updates inFlight, out, totals
+     * @requires inFlight /= <>
+     */
+    private static void writeOldest(Deque<Future<String[]>> inFlight,
+            SimpleWriter out, Totals totals) {
+        String[] results;
+        try {
+            results = inFlight.removeFirst().get();
+        } catch (InterruptedException e) {
+            /*
+             * The interrupt is kept for the caller
+             */
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        for (String result : results) {
+            out.println(result);
+            totals.lines++;
+            if (result.endsWith(" prime")) {
+                totals.primes++;
+            } else if (result.endsWith(" invalid")) {
+                totals.invalid++;
+            }
+        }
+    }
+
+    /**
+     * Tests every line of in for primality, as isPrime2 would, on
+     * {@code parallelism} threads, writes one verdict line per input line to
+     * out (in input order), and reports the throughput to report.
+     *
+     * @param in
+     *            the numbers, one per line
+     * @param out
+     *            where the verdicts go
+     * @param report
+     *            where the throughput summary goes
+     * @param prototype
+     *            number whose implementation the tests use
+     * @param parallelism
+     *            number of worker threads
+     * @updates in, out, report
+     * @requires parallelism > 0
+     * @ensures <pre>
+     * in.atEOS  and
+     * out.content = #out.content * [the verdict line of each line of #in,
+     *                               in order]
+     * </pre>
+     */
+    static void run(SimpleReader in, SimpleWriter out, SimpleWriter report,
+            NaturalNumber prototype, int parallelism) {
+        assert parallelism > 0 : "Violation of: parallelism > 0";
+
+        long start = System.nanoTime();
+        Totals totals = new Totals();
+        int window = parallelism * CHUNKS_PER_WORKER;
+        Deque<Future<String[]>> inFlight = new ArrayDeque<>(window);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            String[] chunk = readChunk(in);
+            while (chunk.length > 0) {
+                if (inFlight.size() == window) {
+                    writeOldest(inFlight, out, totals);
+                }
+                final String[] lines = chunk;
+                inFlight.addLast(
+                        pool.submit(() -> verdicts(lines, prototype, pool)));
+                chunk = readChunk(in);
+            }
+            while (!inFlight.isEmpty()) {
+                writeOldest(inFlight, out, totals);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+        report.println("tested " + totals.lines + " lines in "
+                + String.format("%.3f", seconds) + " s with " + parallelism
+                + " worker thread(s): " + totals.primes + " prime, "
+                + (totals.lines - totals.primes - totals.invalid)
+                + " composite, " + totals.invalid + " invalid ("
+                + String.format("%.1f", totals.lines / seconds)
+                + " lines/s)");
+    }
+
+}
@@ -0,0 +1,314 @@
+import java.util.stream.LongStream;
+
+/**
+ * Exact segmented Sieve of Eratosthenes for bounded ranges. Only odd numbers
+ * are represented, one bit each; a range is cut into segments of 32 KiB of
+ * bits (so a segment stays in the L1/L2 cache while it is crossed off), and
+ * segments are sieved in parallel, each with its own bit array, using the
+ * odd primes up to the square root of the end of the range.
+ *
+ * <p>
+ * The odd numbers below {@code SIEVED_LIMIT} are sieved once, the first time
+ * they are needed, and {@code CryptoUtilities2} looks small numbers up there
+ * instead of testing them.
+ * </p>
+ *
+ * @author Ayman Abumaike
+ *
+ */
+public final class PrimeSieve {
+
+    /**
+     * Numbers below this are answered from a precomputed table.
+     */
+    static final int SIEVED_LIMIT = 1 << 24;
+
+    /**
+     * Largest end of range accepted by primesInRange and countPrimes.
+     */
+    private static final long MAX_HI = 1000000000000000L;
+
+    /**
+     * Number of 64-bit words in one segment (32 KiB).
+     */
+    private static final int SEGMENT_WORDS = 4096;
+
+    /**
+     * Number of odd numbers in one segment.
+     */
+    private static final int SEGMENT_ODDS = SEGMENT_WORDS * Long.SIZE;
+
+    /**
+     * Useful constant, not a magic number: 3.
+     */
+    private static final int THREE = 3;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private PrimeSieve() {
+    }
+
+    /**
+     * Holder of the table of small odd composites, built on first use.
+     */
+    private static final class Table {
+
+        /**
+         * Bit i is set iff 2i + 1 is not prime, for 2i + 1 < SIEVED_LIMIT.
+         */
+        static final long[] COMPOSITE = oddComposites(SIEVED_LIMIT - 1);
+
+    }
+
+    /**
+     * Reports whether bit i of bits is set.
+     *
+     * @param bits
+     *            the bit array
+     * @param i
+     *            bit index
+     * @return true iff bit i is set
+     */
+    private static boolean test(long[] bits, long i) {
+        return (bits[(int) (i >>> 6)] & (1L << i)) != 0;
+    }
+
+    /**
+     * Sets bit i of bits.
+     *
+     * @param bits
+     *            the bit array
+     * @param i
+     *            bit index
+     * @updates bits
+     */
+    private static void set(long[] bits, long i) {
+        bits[(int) (i >>> 6)] |= 1L << i;
+    }
+
+    /**
+     * Returns the odd composites (and 1) up to limit, as bits.
+     *
+     * @param limit
+     *            the largest number of interest
+     * @return bit i is set iff 2i + 1 <= limit is not prime
+     * @requires limit >= 1
+     */
+    private static long[] oddComposites(int limit) {
+        int count = (limit + 1) / 2;
+        long[] composite = new long[(count + Long.SIZE - 1) / Long.SIZE];
+        set(composite, 0);
+        for (int i = 1; (long) (2 * i + 1) * (2 * i + 1) <= limit; i++) {
+            if (!test(composite, i)) {
+                long p = 2 * i + 1;
+                for (long j = p * p / 2; j < count; j += p) {
+                    set(composite, j);
+                }
+            }
+        }
+        return composite;
+    }
+
+    /**
+     * Returns the odd primes up to limit.
+     *
+     * @param limit
+     *            the largest number of interest
+     * @return the odd primes <= limit, in increasing order
+     * @requires limit >= 1
+     */
+    private static int[] oddPrimes(int limit) {
+        long[] composite = oddComposites(limit);
+        int count = (limit + 1) / 2;
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            if (!test(composite, i)) {
+                found++;
+            }
+        }
+        int[] primes = new int[found];
+        found = 0;
+        for (int i = 0; i < count; i++) {
+            if (!test(composite, i)) {
+                primes[found] = 2 * i + 1;
+                found++;
+            }
+        }
+        return primes;
+    }
+
+    /**
+     * Returns floor(sqrt(n)).
+     *
+     * @param n
+     *            the number
+     * @return the integer square root of n
+     * @requires 0 <= n <= MAX_HI
+     */
+    private static int isqrt(long n) {
+        long r = (long) Math.sqrt(n);
+        while (r * r > n) {
+            r--;
+        }
+        while ((r + 1) * (r + 1) <= n) {
+            r++;
+        }
+        return (int) r;
+    }
+
+    /**
+     * Crosses off the odd composites among first, first + 2, ...,
+     * first + 2 * (count - 1).
+     *
+     * @param first
+     *            first number of the segment
+     * @param count
+     *            number of odd numbers in the segment
+     * @param primes
+     *            odd primes, including all those up to the square root of the
+     *            last number of the segment
+     * @return bit i is set iff first + 2i is composite
+     * @requires first >= 3 and first is odd and count > 0
+     */
+    private static long[] sieveSegment(long first, int count, int[] primes) {
+        long[] composite = new long[(count + Long.SIZE - 1) / Long.SIZE];
+        long last = first + 2L * (count - 1);
+        int k = 0;
+        while (k < primes.length && (long) primes[k] * primes[k] <= last) {
+            long p = primes[k];
+            /*
+             * First odd multiple of p in the segment that is at least p^2
+             */
+            long start = Math.max(p * p, (first + p - 1) / p * p);
+            if ((start & 1) == 0) {
+                start += p;
+            }
+            for (long j = (start - first) / 2; j < count; j += p) {
+                set(composite, j);
+            }
+            k++;
+        }
+        return composite;
+    }
+
+    /**
+     * Reports whether n is prime, for n below SIEVED_LIMIT.
+     *
+     * @param n
+     *            number to be checked
+     * @return true iff n is prime
+     * @requires 0 <= n < SIEVED_LIMIT
+     */
+    static boolean isSievedPrime(int n) {
+        assert 0 <= n && n < SIEVED_LIMIT : ""
+                + "Violation of: 0 <= n < SIEVED_LIMIT";
+        boolean isPrime;
+        if ((n & 1) == 0) {
+            isPrime = n == 2;
+        } else {
+            isPrime = !test(Table.COMPOSITE, n / 2);
+        }
+        return isPrime;
+    }
+
+    /**
+     * Counts the primes in [lo, hi].
+     *
+     * @param lo
+     *            low end of the range
+     * @param hi
+     *            high end of the range
+     * @return the number of primes p with lo <= p <= hi
+     * @requires 0 <= lo and hi <= 10^15
+     * @ensures countPrimes = |{p: prime where (lo <= p <= hi)}|
+     */
+    public static long countPrimes(long lo, long hi) {
+        assert 0 <= lo : "Violation of: 0 <= lo";
+        assert hi <= MAX_HI : "Violation of: hi <= 10^15";
+        long count = 0;
+        if (lo <= 2 && 2 <= hi) {
+            count++;
+        }
+        final long first = Math.max(lo, THREE) | 1;
+        if (first <= hi) {
+            final long odds = (hi - first) / 2 + 1;
+            final int[] primes = oddPrimes(Math.max(isqrt(hi), 1));
+            long segments = (odds + SEGMENT_ODDS - 1) / SEGMENT_ODDS;
+            count += LongStream.range(0, segments).parallel().map((s) -> {
+                long offset = s * SEGMENT_ODDS;
+                int size = (int) Math.min(SEGMENT_ODDS, odds - offset);
+                long[] composite = sieveSegment(first + 2 * offset, size,
+                        primes);
+                long primesInSegment = size;
+                for (long word : composite) {
+                    primesInSegment -= Long.bitCount(word);
+                }
+                return primesInSegment;
+            }).sum();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the primes in [lo, hi], in increasing order.
+     *
+     * @param lo
+     *            low end of the range
+     * @param hi
+     *            high end of the range
+     * @return the primes p with lo <= p <= hi
+     * @requires 0 <= lo and hi <= 10^15 and
+     *           [the number of such primes fits in an array]
+     * @ensures <pre>
+     * primesInRange = [the primes p with lo <= p <= hi, in increasing order]
+     * </pre>
+     */
+    public static long[] primesInRange(long lo, long hi) {
+        assert 0 <= lo : "Violation of: 0 <= lo";
+        assert hi <= MAX_HI : "Violation of: hi <= 10^15";
+        long[][] parts = new long[0][];
+        final long first = Math.max(lo, THREE) | 1;
+        if (first <= hi) {
+            final long odds = (hi - first) / 2 + 1;
+            final int[] primes = oddPrimes(Math.max(isqrt(hi), 1));
+            long segments = (odds + SEGMENT_ODDS - 1) / SEGMENT_ODDS;
+            parts = LongStream.range(0, segments).parallel().mapToObj((s) -> {
+                long offset = s * SEGMENT_ODDS;
+                int size = (int) Math.min(SEGMENT_ODDS, odds - offset);
+                long segmentFirst = first + 2 * offset;
+                long[] composite = sieveSegment(segmentFirst, size, primes);
+                long[] found = new long[size];
+                int length = 0;
+                for (int i = 0; i < size; i++) {
+                    if (!test(composite, i)) {
+                        found[length] = segmentFirst + 2L * i;
+                        length++;
+                    }
+                }
+                long[] part = new long[length];
+                System.arraycopy(found, 0, part, 0, length);
+                return part;
+            }).toArray(long[][]::new);
+        }
+        int total = 0;
+        if (lo <= 2 && 2 <= hi) {
+            total++;
+        }
+        for (long[] part : parts) {
+            total += part.length;
+        }
+        long[] result = new long[total];
+        int position = 0;
+        if (lo <= 2 && 2 <= hi) {
+            result[position] = 2;
+            position++;
+        }
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, result, position, part.length);
+            position += part.length;
+        }
+        return result;
+    }
+
+}
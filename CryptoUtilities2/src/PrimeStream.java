@@ -0,0 +1,271 @@
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Lazy enumeration of the consecutive likely primes at or above a starting
+ * number. One {@code CandidateSieve} is kept for the whole enumeration, so the
+ * small-prime residues are computed once and then advanced incrementally,
+ * instead of from scratch for every prime as repeated calls to
+ * {@code generateNextLikelyPrime} would do. Each prime produced is a new
+ * {@code NaturalNumber} of the same implementation as the start.
+ *
+ * <p>
+ * The stream is infinite; bound it with {@code limit} or {@code takeWhile}.
+ * For parallel streams, {@code trySplit} hands off the next batch of sieve
+ * survivors (at most 4096 numbers, so memory stays bounded) to be tested by
+ * another thread, while encounter order stays increasing.
+ * </p>
+ *
+ * @author Ayman Abumaike
+ *
+ */
+public final class PrimeStream {
+
+    /**
+     * Growth of the batch handed off by each successive {@code trySplit}.
+     */
+    private static final int BATCH_UNIT = 64;
+
+    /**
+     * Largest batch handed off by {@code trySplit}.
+     */
+    private static final int MAX_BATCH = 4096;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private PrimeStream() {
+    }
+
+    /**
+     * Returns an iterator over the likely primes at or above start, in
+     * increasing order.
+     *
+     * @param start
+     *            smallest number that may be produced
+     * @return the iterator; it never runs out
+     * @requires start > 1
+     * @ensures <pre>
+     * [iterator produces, in increasing order, exactly the numbers >= start
+     *  reported prime by isPrime2]
+     * </pre>
+     */
+    public static Iterator<NaturalNumber> iterator(NaturalNumber start) {
+        final PrimeSpliterator primes = new PrimeSpliterator(start);
+        return new Iterator<NaturalNumber>() {
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public NaturalNumber next() {
+                return primes.nextPrime();
+            }
+
+        };
+    }
+
+    /**
+     * Returns a stream of the likely primes at or above start, in increasing
+     * order.
+     *
+     * @param start
+     *            smallest number that may be produced
+     * @return the (infinite) stream
+     * @requires start > 1
+     * @ensures <pre>
+     * [stream produces, in increasing order, exactly the numbers >= start
+     *  reported prime by isPrime2]
+     * </pre>
+     */
+    public static Stream<NaturalNumber> stream(NaturalNumber start) {
+        return StreamSupport.stream(new PrimeSpliterator(start), false);
+    }
+
+    /**
+     * Spliterator over all the likely primes at or above a start.
+     */
+    private static final class PrimeSpliterator
+            implements Spliterator<NaturalNumber> {
+
+        /**
+         * Source of the candidates.
+         */
+        private final CandidateSieve sieve;
+
+        /**
+         * Number whose implementation the primes use.
+         */
+        private final NaturalNumber prototype;
+
+        /**
+         * Size of the batch the next trySplit hands off.
+         */
+        private int batch;
+
+        /**
+         * Constructor.
+         *
+         * @param start
+         *            smallest number that may be produced
+         * @requires start > 1
+         */
+        PrimeSpliterator(NaturalNumber start) {
+            this.sieve = new CandidateSieve(start);
+            this.prototype = start.newInstance();
+            this.batch = 0;
+        }
+
+        /**
+         * Returns the next likely prime.
+         *
+         * @return the next likely prime
+         */
+        NaturalNumber nextPrime() {
+            NaturalNumber candidate = this.prototype.newInstance();
+            this.sieve.next(candidate);
+            while (!CryptoUtilities2.isPrime2(candidate)) {
+                this.sieve.next(candidate);
+            }
+            return candidate;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super NaturalNumber> action) {
+            action.accept(this.nextPrime());
+            return true;
+        }
+
+        @Override
+        public Spliterator<NaturalNumber> trySplit() {
+            /*
+             * Hand off the next batch of untested candidates; they all come
+             * before whatever this spliterator produces afterwards
+             */
+            this.batch = Math.min(this.batch + BATCH_UNIT, MAX_BATCH);
+            NaturalNumber[] candidates = new NaturalNumber[this.batch];
+            for (int i = 0; i < candidates.length; i++) {
+                candidates[i] = this.prototype.newInstance();
+                this.sieve.next(candidates[i]);
+            }
+            return new CandidateSpliterator(candidates);
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super NaturalNumber> getComparator() {
+            return null;
+        }
+
+    }
+
+    /**
+     * Spliterator over the likely primes among a batch of candidates.
+     */
+    private static final class CandidateSpliterator
+            implements Spliterator<NaturalNumber> {
+
+        /**
+         * The candidates, in increasing order.
+         */
+        private final NaturalNumber[] candidates;
+
+        /**
+         * Index of the next candidate to test.
+         */
+        private int from;
+
+        /**
+         * One past the index of the last candidate of this spliterator.
+         */
+        private final int to;
+
+        /**
+         * Constructor.
+         *
+         * @param candidates
+         *            the candidates, in increasing order
+         */
+        CandidateSpliterator(NaturalNumber[] candidates) {
+            this(candidates, 0, candidates.length);
+        }
+
+        /**
+         * Constructor for the range [from, to) of candidates.
+         *
+         * @param candidates
+         *            the candidates, in increasing order
+         * @param from
+         *            first index
+         * @param to
+         *            one past the last index
+         */
+        private CandidateSpliterator(NaturalNumber[] candidates, int from,
+                int to) {
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super NaturalNumber> action) {
+            boolean found = false;
+            while (!found && this.from < this.to) {
+                NaturalNumber candidate = this.candidates[this.from];
+                this.candidates[this.from] = null;
+                this.from++;
+                if (CryptoUtilities2.isPrime2(candidate)) {
+                    action.accept(candidate);
+                    found = true;
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public Spliterator<NaturalNumber> trySplit() {
+            Spliterator<NaturalNumber> prefix = null;
+            int middle = (this.from + this.to) >>> 1;
+            if (middle > this.from) {
+                prefix = new CandidateSpliterator(this.candidates, this.from,
+                        middle);
+                this.from = middle;
+            }
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.to - this.from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super NaturalNumber> getComparator() {
+            return null;
+        }
+
+    }
+
+}
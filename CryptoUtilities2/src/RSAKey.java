@@ -0,0 +1,402 @@
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * RSA key pair built from {@code CryptoUtilities2}. Key generation searches
+ * for the two primes p and q concurrently, one thread each, and derives the
+ * public exponent e = 65537, the private exponent d = e^(-1) mod lcm(p - 1,
+ * q - 1), and the Chinese Remainder Theorem (CRT) components dP = d mod
+ * (p - 1), dQ = d mod (q - 1) and qInv = q^(-1) mod p.
+ *
+ * <p>
+ * The private-key operation uses the CRT: two exponentiations with half-size
+ * moduli and half-size exponents, recombined with Garner's formula, instead of
+ * one full-size exponentiation modulo n. Since the cost of one
+ * exponentiation grows roughly with the cube of the size, this is about 3 to
+ * 4 times faster.
+ * </p>
+ *
+ * <p>
+ * A key never changes once built, so it may be shared between threads; the
+ * accessors return copies.
+ * </p>
+ *
+ * @author Ayman Abumaike
+ *
+ */
+public final class RSAKey {
+
+    /**
+     * The public exponent (a prime, so gcd(e, p - 1) = 1 iff p mod e /= 1).
+     */
+    public static final int PUBLIC_EXPONENT = 65537;
+
+    /**
+     * Number of primes generated concurrently.
+     */
+    private static final int PRIMES = 2;
+
+    /**
+     * Leading digit of the smallest prime considered; with both primes in
+     * [4 * 10^(k-1), 10^k), their product has exactly 2k digits.
+     */
+    private static final int LOWEST_LEADING_DIGIT = 4;
+
+    /**
+     * The modulus n = p * q.
+     */
+    private final NaturalNumber n;
+
+    /**
+     * The public exponent e.
+     */
+    private final NaturalNumber e;
+
+    /**
+     * The private exponent d.
+     */
+    private final NaturalNumber d;
+
+    /**
+     * The larger prime factor of n.
+     */
+    private final NaturalNumber p;
+
+    /**
+     * The smaller prime factor of n.
+     */
+    private final NaturalNumber q;
+
+    /**
+     * d mod (p - 1).
+     */
+    private final NaturalNumber dP;
+
+    /**
+     * d mod (q - 1).
+     */
+    private final NaturalNumber dQ;
+
+    /**
+     * q^(-1) mod p.
+     */
+    private final NaturalNumber qInv;
+
+    /**
+     * Constructor from the two primes; all other components are derived.
+     *
+     * @param p
+     *            one prime
+     * @param q
+     *            the other prime
+     * @requires <pre>
+     * [p and q are distinct primes]  and
+     * p mod PUBLIC_EXPONENT /= 1  and  q mod PUBLIC_EXPONENT /= 1
+     * </pre>
+     */
+    private RSAKey(NaturalNumber p, NaturalNumber q) {
+        this.p = copy(p);
+        this.q = copy(q);
+        if (this.p.compareTo(this.q) < 0) {
+            /*
+             * Keep p > q, so that q (and therefore m2 below) is below p
+             */
+            NaturalNumber temp = this.p.newInstance();
+            temp.transferFrom(this.p);
+            this.p.transferFrom(this.q);
+            this.q.transferFrom(temp);
+        }
+        this.n = copy(this.p);
+        this.n.multiply(this.q);
+        this.e = this.p.newInstance();
+        this.e.setFromInt(PUBLIC_EXPONENT);
+
+        NaturalNumber pMinus1 = copy(this.p);
+        pMinus1.decrement();
+        NaturalNumber qMinus1 = copy(this.q);
+        qMinus1.decrement();
+        /*
+         * lambda = lcm(p - 1, q - 1) = (p - 1) * (q - 1) / gcd(p - 1, q - 1)
+         */
+        NaturalNumber lambda = copy(pMinus1);
+        NaturalNumber g = copy(pMinus1);
+        CryptoUtilities2.reduceToGCD(g, copy(qMinus1));
+        lambda.divide(g);
+        lambda.multiply(qMinus1);
+
+        this.d = copy(this.e);
+        CryptoUtilities2.modInverse(this.d, lambda);
+        this.dP = copy(this.d).divide(pMinus1);
+        this.dQ = copy(this.d).divide(qMinus1);
+        this.qInv = copy(this.q);
+        CryptoUtilities2.modInverse(this.qInv, this.p);
+    }
+
+    /**
+     * Returns a new key with the given primes.
+     *
+     * @param p
+     *            one prime
+     * @param q
+     *            the other prime
+     * @return the key
+     * @requires <pre>
+     * [p and q are distinct primes]  and
+     * p mod PUBLIC_EXPONENT /= 1  and  q mod PUBLIC_EXPONENT /= 1
+     * </pre>
+     */
+    static RSAKey fromPrimes(NaturalNumber p, NaturalNumber q) {
+        assert p.compareTo(q) != 0 : "Violation of: p /= q";
+
+        return new RSAKey(p, q);
+    }
+
+    /**
+     * Generates a new key whose primes both have {@code digits} digits, so the
+     * modulus has {@code 2 * digits} digits. The two primes are searched for
+     * concurrently, each from a random start drawn from its own
+     * {@code java.security.SecureRandom} (never from the fast generator behind
+     * {@code CryptoUtilities2.randomNumber(NaturalNumber)}, whose state can be
+     * recovered from its outputs). The components have the implementation of
+     * prototype.
+     *
+     * @param prototype
+     *            number whose implementation the key uses
+     * @param digits
+     *            number of digits of each prime
+     * @return the new key
+     * @requires digits > 1
+     * @ensures <pre>
+     * [generate is a key whose primes are likely primes according to
+     *  isPrime2, with 4 * 10^(digits-1) <= q < p < 10^digits]
+     * </pre>
+     */
+    public static RSAKey generate(NaturalNumber prototype, int digits) {
+        assert digits > 1 : "Violation of: digits > 1";
+
+        List<Callable<NaturalNumber>> searches = new ArrayList<>();
+        for (int i = 0; i < PRIMES; i++) {
+            searches.add(
+                    () -> randomPrime(prototype, digits, new SecureRandom()));
+        }
+        NaturalNumber[] primes = new NaturalNumber[PRIMES];
+        ForkJoinPool pool = new ForkJoinPool(PRIMES);
+        try {
+            List<Future<NaturalNumber>> results = pool.invokeAll(searches);
+            for (int i = 0; i < PRIMES; i++) {
+                try {
+                    primes[i] = results.get(i).get();
+                } catch (InterruptedException e) {
+                    /*
+                     * The interrupt is kept for the caller
+                     */
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        while (primes[0].compareTo(primes[1]) == 0) {
+            primes[1] = randomPrime(prototype, digits, new SecureRandom());
+        }
+        return new RSAKey(primes[0], primes[1]);
+    }
+
+    /**
+     * Returns a random likely prime p with {@code digits} digits, leading digit
+     * at least 4, and gcd(PUBLIC_EXPONENT, p - 1) = 1, searched for from
+     * random starts drawn from random.
+     *
+     * @param prototype
+     *            number whose implementation is used
+     * @param digits
+     *            number of digits
+     * @param random
+     *            cryptographically secure source of the random starts
+     * @return the prime
+     * @requires digits > 1
+     */
+    private static NaturalNumber randomPrime(NaturalNumber prototype,
+            int digits, SecureRandom random) {
+        NaturalNumber lower = prototype.newInstance();
+        lower.setFromInt(LOWEST_LEADING_DIGIT);
+        NaturalNumber upper = prototype.newInstance();
+        upper.setFromInt(1);
+        for (int i = 1; i < digits; i++) {
+            lower.multiplyBy10(0);
+            upper.multiplyBy10(0);
+        }
+        upper.multiplyBy10(0);
+        /*
+         * span = 10^digits - 1 - lower, so lower + randomNumber(span) is in
+         * [lower, 10^digits)
+         */
+        NaturalNumber span = copy(upper);
+        span.subtract(lower);
+        span.decrement();
+        NaturalNumber exponent = prototype.newInstance();
+        exponent.setFromInt(PUBLIC_EXPONENT);
+        NaturalNumber result = null;
+        while (result == null) {
+            NaturalNumber candidate = CryptoUtilities2.randomNumber(span,
+                    random);
+            candidate.add(lower);
+            CryptoUtilities2.generateNextLikelyPrime(candidate);
+            if (candidate.compareTo(upper) < 0) {
+                NaturalNumber pMinus1 = copy(candidate);
+                pMinus1.decrement();
+                if (!pMinus1.divide(exponent).isZero()) {
+                    result = candidate;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new copy of x.
+     *
+     * @param x
+     *            the number
+     * @return a copy of x
+     */
+    private static NaturalNumber copy(NaturalNumber x) {
+        NaturalNumber result = x.newInstance();
+        result.copyFrom(x);
+        return result;
+    }
+
+    /**
+     * Updates m to the result of the public-key operation (encryption or
+     * signature verification).
+     *
+     * @param m
+     *            the message
+     * @updates m
+     * @requires m < n
+     * @ensures m = #m ^ (e) mod n
+     */
+    public void encrypt(NaturalNumber m) {
+        assert m.compareTo(this.n) < 0 : "Violation of: m < n";
+
+        CryptoUtilities2.powerMod(m, this.e, this.n);
+    }
+
+    /**
+     * Updates c to the result of the private-key operation (decryption or
+     * signing), computed with the Chinese Remainder Theorem.
+     *
+     * @param c
+     *            the ciphertext
+     * @updates c
+     * @requires c < n
+     * @ensures c = #c ^ (d) mod n
+     */
+    public void decrypt(NaturalNumber c) {
+        assert c.compareTo(this.n) < 0 : "Violation of: c < n";
+
+        /*
+         * m1 = c^dP mod p and m2 = c^dQ mod q, each computed on a half-size
+         * modulus
+         */
+        NaturalNumber m1 = copy(c).divide(this.p);
+        CryptoUtilities2.powerMod(m1, this.dP, this.p);
+        NaturalNumber m2 = copy(c).divide(this.q);
+        CryptoUtilities2.powerMod(m2, this.dQ, this.q);
+        /*
+         * Garner: h = qInv * (m1 - m2) mod p, and then c = m2 + h * q; since
+         * m2 < q < p, adding p once keeps m1 - m2 nonnegative
+         */
+        NaturalNumber h = copy(m1);
+        h.add(this.p);
+        h.subtract(m2);
+        h.multiply(this.qInv);
+        h = h.divide(this.p);
+        h.multiply(this.q);
+        h.add(m2);
+        c.transferFrom(h);
+    }
+
+    /**
+     * Returns the modulus n.
+     *
+     * @return a copy of n
+     */
+    public NaturalNumber modulus() {
+        return copy(this.n);
+    }
+
+    /**
+     * Returns the public exponent e.
+     *
+     * @return a copy of e
+     */
+    public NaturalNumber publicExponent() {
+        return copy(this.e);
+    }
+
+    /**
+     * Returns the private exponent d.
+     *
+     * @return a copy of d
+     */
+    public NaturalNumber privateExponent() {
+        return copy(this.d);
+    }
+
+    /**
+     * Returns the larger prime factor p of n.
+     *
+     * @return a copy of p
+     */
+    public NaturalNumber p() {
+        return copy(this.p);
+    }
+
+    /**
+     * Returns the smaller prime factor q of n.
+     *
+     * @return a copy of q
+     */
+    public NaturalNumber q() {
+        return copy(this.q);
+    }
+
+    /**
+     * Returns the CRT exponent dP = d mod (p - 1).
+     *
+     * @return a copy of dP
+     */
+    public NaturalNumber dP() {
+        return copy(this.dP);
+    }
+
+    /**
+     * Returns the CRT exponent dQ = d mod (q - 1).
+     *
+     * @return a copy of dQ
+     */
+    public NaturalNumber dQ() {
+        return copy(this.dQ);
+    }
+
+    /**
+     * Returns the CRT coefficient qInv = q^(-1) mod p.
+     *
+     * @return a copy of qInv
+     */
+    public NaturalNumber qInv() {
+        return copy(this.qInv);
+    }
+
+}
@@ -0,0 +1,386 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Strong Lucas probable prime test for one fixed odd number {@code n}, with
+ * Selfridge's parameters: D is the first of 5, -7, 9, -11, ... with Jacobi
+ * symbol (D/n) = -1, P = 1 and Q = (1 - D) / 4. Together with a strong
+ * base-2 test (see {@code MillerRabin}) this is the Baillie-PSW test, which
+ * has no known counterexample.
+ *
+ * <p>
+ * The sequences are computed in Montgomery form for n: additions,
+ * subtractions and halvings mod n commute with the Montgomery scaling, so
+ * only the products need {@code MontgomeryModulus}, and nothing is converted
+ * back except to compare with 0.
+ * </p>
+ *
+ * @author Ayman Abumaike
+ *
+ */
+final class StrongLucas {
+
+    /**
+     * First value of |D| tried.
+     */
+    private static final int FIRST_D = 5;
+
+    /**
+     * Number of values of D tried before checking whether n is a perfect
+     * square (for which no D works).
+     */
+    private static final int TRIES_BEFORE_SQUARE_CHECK = 8;
+
+    /**
+     * Useful constant, not a magic number: 4.
+     */
+    private static final int FOUR = 4;
+
+    /**
+     * Useful constant, not a magic number: 8.
+     */
+    private static final int EIGHT = 8;
+
+    /**
+     * Residue 3 mod 4, in the reciprocity law.
+     */
+    private static final int THREE_MOD_4 = 3;
+
+    /**
+     * Residue 3 mod 8, in the supplement for 2.
+     */
+    private static final int THREE_MOD_8 = 3;
+
+    /**
+     * Residue 5 mod 8, in the supplement for 2.
+     */
+    private static final int FIVE_MOD_8 = 5;
+
+    /**
+     * The number being tested.
+     */
+    private final NaturalNumber n;
+
+    /**
+     * Montgomery context for n.
+     */
+    private final MontgomeryModulus context;
+
+    /**
+     * Private constructor; use {@code isProbablePrime}.
+     *
+     * @param n
+     *            the number to be tested
+     * @requires n > 1000 and [n is coprime to 10]
+     */
+    private StrongLucas(NaturalNumber n) {
+        this.n = n.newInstance();
+        this.n.copyFrom(n);
+        this.context = new MontgomeryModulus(n);
+    }
+
+    /**
+     * Returns x mod m, for a small positive m.
+     *
+     * @param x
+     *            the number
+     * @param m
+     *            the modulus
+     * @return x mod m
+     * @requires m > 0
+     */
+    private static int mod(NaturalNumber x, int m) {
+        NaturalNumber quotient = x.newInstance();
+        quotient.copyFrom(x);
+        NaturalNumber divisor = x.newInstance();
+        divisor.setFromInt(m);
+        return quotient.divide(divisor).toInt();
+    }
+
+    /**
+     * Returns the Jacobi symbol (a/b) of two small numbers.
+     *
+     * @param a
+     *            the numerator
+     * @param b
+     *            the denominator
+     * @return (a/b), which is -1, 0 or 1
+     * @requires a >= 0 and b > 0 and [b is odd]
+     */
+    private static int jacobi(int a, int b) {
+        int x = a % b;
+        int y = b;
+        int result = 1;
+        while (x != 0) {
+            while (x % 2 == 0) {
+                x /= 2;
+                int r = y % EIGHT;
+                if (r == THREE_MOD_8 || r == FIVE_MOD_8) {
+                    result = -result;
+                }
+            }
+            int t = x;
+            x = y;
+            y = t;
+            if (x % FOUR == THREE_MOD_4 && y % FOUR == THREE_MOD_4) {
+                result = -result;
+            }
+            x %= y;
+        }
+        if (y != 1) {
+            result = 0;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the Jacobi symbol (d/n), where |d| is small and n is the number
+     * being tested.
+     *
+     * @param d
+     *            the numerator
+     * @return (d/n), which is -1, 0 or 1
+     * @requires [|d| is odd]
+     */
+    private int jacobi(int d) {
+        /*
+         * (|d|/n) = (n mod |d| / |d|), flipped if both are 3 mod 4, and
+         * (-1/n) = -1 iff n = 3 mod 4
+         */
+        int a = Math.abs(d);
+        int nMod4 = mod(this.n, FOUR);
+        int result = jacobi(mod(this.n, a), a);
+        if (a % FOUR == THREE_MOD_4 && nMod4 == THREE_MOD_4) {
+            result = -result;
+        }
+        if (d < 0 && nMod4 == THREE_MOD_4) {
+            result = -result;
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether n is a perfect square.
+     *
+     * @return true iff n is a perfect square
+     */
+    private boolean isSquare() {
+        NaturalNumber root = this.n.newInstance();
+        root.copyFrom(this.n);
+        root.root(2);
+        root.multiply(copy(root));
+        return root.compareTo(this.n) == 0;
+    }
+
+    /**
+     * Returns a new copy of x.
+     *
+     * @param x
+     *            the number
+     * @return a copy of x
+     */
+    private static NaturalNumber copy(NaturalNumber x) {
+        NaturalNumber result = x.newInstance();
+        result.copyFrom(x);
+        return result;
+    }
+
+    /**
+     * Returns the Montgomery form of v mod n, for a small signed v.
+     *
+     * @param v
+     *            the value
+     * @return v * R mod n
+     */
+    private NaturalNumber montgomery(int v) {
+        NaturalNumber result = this.n.newInstance();
+        result.setFromInt(Math.abs(v));
+        this.context.toMontgomery(result);
+        if (v < 0 && !result.isZero()) {
+            NaturalNumber negated = copy(this.n);
+            negated.subtract(result);
+            result.transferFrom(negated);
+        }
+        return result;
+    }
+
+    /**
+     * Updates a to a + b mod n.
+     *
+     * @param a
+     *            first term
+     * @param b
+     *            second term
+     * @updates a
+     * @requires a < n and b < n
+     * @ensures a = (#a + b) mod n
+     */
+    private void addMod(NaturalNumber a, NaturalNumber b) {
+        a.add(b);
+        if (a.compareTo(this.n) >= 0) {
+            a.subtract(this.n);
+        }
+    }
+
+    /**
+     * Updates a to a - b mod n.
+     *
+     * @param a
+     *            the minuend
+     * @param b
+     *            the subtrahend
+     * @updates a
+     * @requires a < n and b < n
+     * @ensures a = (#a - b) mod n
+     */
+    private void subtractMod(NaturalNumber a, NaturalNumber b) {
+        if (a.compareTo(b) < 0) {
+            a.add(this.n);
+        }
+        a.subtract(b);
+    }
+
+    /**
+     * Updates a to a / 2 mod n.
+     *
+     * @param a
+     *            the number
+     * @param two
+     *            the number 2
+     * @updates a
+     * @requires a < n
+     * @ensures 2 * a = #a mod n  and  a < n
+     */
+    private void halveMod(NaturalNumber a, NaturalNumber two) {
+        if (!CryptoUtilities2.isEven(a)) {
+            a.add(this.n);
+        }
+        a.divide(two);
+    }
+
+    /**
+     * Reports whether n is a strong Lucas probable prime with Selfridge's
+     * parameters.
+     *
+     * @param n
+     *            the number to be tested
+     * @return false means n is definitely composite
+     * @requires n > 1000 and [n is coprime to 10]
+     * @ensures <pre>
+     * isProbablePrime = [n is not a perfect square, and with n + 1 = d * 2^s
+     *   (d odd), U_d = 0 mod n or V_(d * 2^r) = 0 mod n for some 0 <= r < s]
+     * </pre>
+     */
+    static boolean isProbablePrime(NaturalNumber n) {
+        assert MontgomeryModulus.isApplicable(n) : ""
+                + "Violation of: n is coprime to 10";
+
+        StrongLucas test = new StrongLucas(n);
+        return test.run();
+    }
+
+    /**
+     * Runs the test on n.
+     *
+     * @return false means n is definitely composite
+     */
+    private boolean run() {
+        /*
+         * Selfridge's method A: D = 5, -7, 9, -11, ...; a Jacobi symbol of 0
+         * means |D| shares a factor with n (which is larger than |D|)
+         */
+        int d = FIRST_D;
+        int symbol = this.jacobi(d);
+        int tries = 1;
+        boolean square = false;
+        while (symbol == 1 && !square) {
+            if (d > 0) {
+                d = -(d + 2);
+            } else {
+                d = -d + 2;
+            }
+            symbol = this.jacobi(d);
+            tries++;
+            if (tries == TRIES_BEFORE_SQUARE_CHECK) {
+                square = this.isSquare();
+            }
+        }
+        boolean probablePrime = symbol == -1;
+        if (probablePrime) {
+            probablePrime = this.strongTest(d, (1 - d) / FOUR);
+        }
+        return probablePrime;
+    }
+
+    /**
+     * Strong Lucas test with parameters P = 1, D, and Q = (1 - D) / 4.
+     *
+     * @param d
+     *            the discriminant D
+     * @param q
+     *            the parameter Q
+     * @return false means n is definitely composite
+     * @requires (D/n) = -1
+     */
+    private boolean strongTest(int d, int q) {
+        /*
+         * n + 1 = k * 2^s with k odd
+         */
+        NaturalNumber nPlusOne = copy(this.n);
+        nPlusOne.increment();
+        boolean[] bits = MontgomeryModulus.bitsOf(nPlusOne);
+        int s = 0;
+        while (!bits[s]) {
+            s++;
+        }
+        NaturalNumber two = this.n.newInstance();
+        two.setFromInt(2);
+        NaturalNumber dM = this.montgomery(d);
+        NaturalNumber qM = this.montgomery(q);
+        /*
+         * Start from index 1: U_1 = 1, V_1 = P = 1, Q^1 = Q; then for each
+         * further bit of k, double the index and add the bit
+         */
+        NaturalNumber u = this.montgomery(1);
+        NaturalNumber v = copy(u);
+        NaturalNumber qk = copy(qM);
+        for (int i = bits.length - 2; i >= s; i--) {
+            /*
+             * U_2j = U_j * V_j, V_2j = V_j^2 - 2 Q^j, Q^2j = (Q^j)^2
+             */
+            this.context.multiply(u, v);
+            this.context.square(v);
+            NaturalNumber twoQk = copy(qk);
+            this.addMod(twoQk, qk);
+            this.subtractMod(v, twoQk);
+            this.context.square(qk);
+            if (bits[i]) {
+                /*
+                 * U_2j+1 = (U_2j + V_2j) / 2, V_2j+1 = (D U_2j + V_2j) / 2
+                 */
+                NaturalNumber du = copy(u);
+                this.context.multiply(du, dM);
+                this.addMod(u, v);
+                this.halveMod(u, two);
+                this.addMod(v, du);
+                this.halveMod(v, two);
+                this.context.multiply(qk, qM);
+            }
+        }
+        /*
+         * U_k = 0, or V_(k * 2^r) = 0 for some 0 <= r < s
+         */
+        boolean probablePrime = u.isZero() || v.isZero();
+        int r = 1;
+        while (!probablePrime && r < s) {
+            this.context.square(v);
+            NaturalNumber twoQk = copy(qk);
+            this.addMod(twoQk, qk);
+            this.subtractMod(v, twoQk);
+            this.context.square(qk);
+            probablePrime = v.isZero();
+            r++;
+        }
+        return probablePrime;
+    }
+
+}
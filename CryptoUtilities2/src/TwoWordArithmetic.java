@@ -0,0 +1,534 @@
+/**
+ * Pollard-Brent rho on moduli below 2^126, with every number held in two
+ * {@code long} words (high and low, both unsigned) and multiplied in
+ * Montgomery form with R = 2^128. Products are formed with
+ * {@code Math.multiplyHigh}, as in {@code LongArithmetic}, so a rho step
+ * allocates nothing and costs a few dozen machine instructions instead of a
+ * pair of {@code NaturalNumber} multiplications; {@code Factorization} uses it
+ * for every cofactor between 2^63 and 2^126.
+ *
+ * <p>
+ * Keeping m below 2^126 leaves two spare bits in the high word, so sums of
+ * two residues and the intermediate results of the reduction never carry out
+ * of 128 bits.
+ * </p>
+ *
+ * @author Ayman Abumaike
+ *
+ */
+final class TwoWordArithmetic {
+
+    /**
+     * Largest bit length of a modulus.
+     */
+    static final int MAX_BITS = 126;
+
+    /**
+     * Bits per word.
+     */
+    private static final int WORD_BITS = 64;
+
+    /**
+     * Bits per NaturalNumber4 limb.
+     */
+    private static final int HALF_WORD_BITS = 32;
+
+    /**
+     * Mask of the low half of a word.
+     */
+    private static final long HALF_WORD_MASK = 0xFFFFFFFFL;
+
+    /**
+     * Newton iterations needed to get m^(-1) mod 2^64 starting from m (which
+     * is already correct to 3 bits, doubling each time).
+     */
+    private static final int NEWTON_STEPS = 5;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private TwoWordArithmetic() {
+    }
+
+    /**
+     * Returns the high 64 bits of the unsigned product of a and b.
+     *
+     * @param a
+     *            first factor, as an unsigned value
+     * @param b
+     *            second factor, as an unsigned value
+     * @return floor(a * b / 2^64)
+     */
+    private static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> (WORD_BITS - 1)) & b)
+                + ((b >> (WORD_BITS - 1)) & a);
+    }
+
+    /**
+     * Returns the carry out of the unsigned addition that produced sum.
+     *
+     * @param sum
+     *            the (wrapped) sum
+     * @param addend
+     *            one of the two terms
+     * @return 1 if the addition overflowed 64 bits, 0 otherwise
+     */
+    private static long carry(long sum, long addend) {
+        long result = 0;
+        if (Long.compareUnsigned(sum, addend) < 0) {
+            result = 1;
+        }
+        return result;
+    }
+
+    /**
+     * Returns word {@code index} (0 for the low word) of x.
+     *
+     * @param x
+     *            the number
+     * @param index
+     *            which word
+     * @return bits [64 index, 64 index + 64) of x, as an unsigned value
+     */
+    private static long word(NaturalNumber4 x, int index) {
+        NaturalNumber4 copy = new NaturalNumber4(x);
+        copy.shiftRight(WORD_BITS * index);
+        copy.truncate(WORD_BITS);
+        NaturalNumber4 high = new NaturalNumber4(copy);
+        high.shiftRight(HALF_WORD_BITS);
+        copy.truncate(HALF_WORD_BITS);
+        return (high.toLong() << HALF_WORD_BITS) | copy.toLong();
+    }
+
+    /**
+     * Returns high * 2^64 + low as a new NaturalNumber4.
+     *
+     * @param high
+     *            high word
+     * @param low
+     *            low word, as an unsigned value
+     * @return the number
+     * @requires high >= 0
+     */
+    private static NaturalNumber4 natural(long high, long low) {
+        NaturalNumber4 result = new NaturalNumber4();
+        result.setFromLong(high);
+        result.shiftLeft(HALF_WORD_BITS);
+        NaturalNumber4 part = new NaturalNumber4();
+        part.setFromLong(low >>> HALF_WORD_BITS);
+        result.add(part);
+        result.shiftLeft(HALF_WORD_BITS);
+        part.setFromLong(low & HALF_WORD_MASK);
+        result.add(part);
+        return result;
+    }
+
+    /**
+     * Looks for a nontrivial factor of n with Brent's variant of Pollard's
+     * rho method, iterating x -> x^2 + c in Montgomery form and taking one
+     * GCD per batch of {@code batch} steps.
+     *
+     * @param n
+     *            the number to be split
+     * @param c
+     *            the constant of the iteration
+     * @param batch
+     *            number of steps whose differences share one GCD
+     * @param maxSteps
+     *            number of steps after which the search gives up
+     * @return a divisor d of n with 1 < d, where d = n means the iteration
+     *         cycled without splitting n; or null if nothing was found within
+     *         maxSteps steps
+     * @requires <pre>
+     * n is odd  and  [n is composite]  and  n < 2^126  and
+     * 0 < c < n  and  batch > 0
+     * </pre>
+     */
+    static NaturalNumber4 pollardBrent(NaturalNumber4 n, long c, int batch,
+            long maxSteps) {
+        assert n.bitLength() <= MAX_BITS : "Violation of: n < 2^126";
+
+        Montgomery context = new Montgomery(word(n, 1), word(n, 0));
+        context.toMontgomery(0, 2);
+        long yHigh = context.high;
+        long yLow = context.low;
+        context.toMontgomery(0, c);
+        long cHigh = context.high;
+        long cLow = context.low;
+        context.toMontgomery(0, 1);
+        long qHigh = context.high;
+        long qLow = context.low;
+        long xHigh = yHigh;
+        long xLow = yLow;
+        long ysHigh = yHigh;
+        long ysLow = yLow;
+        boolean found = false;
+        long steps = 0;
+        long r = 1;
+        while (!found && steps < maxSteps) {
+            xHigh = yHigh;
+            xLow = yLow;
+            for (long i = 0; i < r; i++) {
+                context.step(yHigh, yLow, cHigh, cLow);
+                yHigh = context.high;
+                yLow = context.low;
+            }
+            long k = 0;
+            while (k < r && !found) {
+                ysHigh = yHigh;
+                ysLow = yLow;
+                long count = Math.min(batch, r - k);
+                for (long i = 0; i < count; i++) {
+                    context.step(yHigh, yLow, cHigh, cLow);
+                    yHigh = context.high;
+                    yLow = context.low;
+                    context.difference(xHigh, xLow, yHigh, yLow);
+                    context.multiply(qHigh, qLow, context.high, context.low);
+                    qHigh = context.high;
+                    qLow = context.low;
+                }
+                found = !context.isUnitGcd(qHigh, qLow);
+                k += batch;
+            }
+            steps += 2 * r;
+            r *= 2;
+        }
+        NaturalNumber4 result = null;
+        if (found) {
+            NaturalNumber4 g = context.gcd(qHigh, qLow);
+            if (g.compareTo(n) == 0) {
+                /*
+                 * The batch overshot (several factors at once, or q hit 0);
+                 * redo its steps one GCD at a time
+                 */
+                long dHigh = 0;
+                long dLow = 0;
+                boolean unit = true;
+                while (unit) {
+                    context.step(ysHigh, ysLow, cHigh, cLow);
+                    ysHigh = context.high;
+                    ysLow = context.low;
+                    context.difference(xHigh, xLow, ysHigh, ysLow);
+                    dHigh = context.high;
+                    dLow = context.low;
+                    unit = context.isUnitGcd(dHigh, dLow);
+                }
+                g = context.gcd(dHigh, dLow);
+            }
+            result = g;
+        }
+        return result;
+    }
+
+    /**
+     * Montgomery arithmetic with R = 2^128 for one odd modulus m < 2^126.
+     * Results are left in {@code high} and {@code low}, so nothing is
+     * allocated per operation.
+     */
+    private static final class Montgomery {
+
+        /**
+         * High word of the modulus.
+         */
+        private final long mHigh;
+
+        /**
+         * Low word of the modulus.
+         */
+        private final long mLow;
+
+        /**
+         * -m^(-1) mod 2^64.
+         */
+        private final long mNegInverse;
+
+        /**
+         * High word of R^2 mod m.
+         */
+        private final long r2High;
+
+        /**
+         * Low word of R^2 mod m.
+         */
+        private final long r2Low;
+
+        /**
+         * High word of the last result.
+         */
+        private long high;
+
+        /**
+         * Low word of the last result.
+         */
+        private long low;
+
+        /**
+         * Constructor.
+         *
+         * @param mHigh
+         *            high word of the modulus
+         * @param mLow
+         *            low word of the modulus
+         * @requires m > 1 and m is odd and m < 2^126
+         */
+        Montgomery(long mHigh, long mLow) {
+            this.mHigh = mHigh;
+            this.mLow = mLow;
+            long inverse = mLow;
+            for (int i = 0; i < NEWTON_STEPS; i++) {
+                inverse *= 2 - mLow * inverse;
+            }
+            this.mNegInverse = -inverse;
+            /*
+             * R^2 mod m = 2^256 mod m, by one long division done once
+             */
+            NaturalNumber4 r2 = new NaturalNumber4(1);
+            r2.shiftLeft(2 * 2 * WORD_BITS);
+            NaturalNumber4 remainder = (NaturalNumber4) r2
+                    .divide(natural(mHigh, mLow));
+            this.r2High = word(remainder, 1);
+            this.r2Low = word(remainder, 0);
+        }
+
+        /**
+         * Sets (high, low) to a * b * R^(-1) mod m.
+         *
+         * @param aHigh
+         *            high word of the first factor
+         * @param aLow
+         *            low word of the first factor
+         * @param bHigh
+         *            high word of the second factor
+         * @param bLow
+         *            low word of the second factor
+         * @requires a < m and b < m
+         */
+        void multiply(long aHigh, long aLow, long bHigh, long bLow) {
+            /*
+             * The product, (t3, t2, t1, t0), is below 2^252
+             */
+            long t0 = aLow * bLow;
+            long t1 = unsignedMultiplyHigh(aLow, bLow);
+            long lo = aLow * bHigh;
+            long hi = unsignedMultiplyHigh(aLow, bHigh);
+            t1 += lo;
+            hi += carry(t1, lo);
+            long t2 = hi;
+            lo = aHigh * bLow;
+            hi = unsignedMultiplyHigh(aHigh, bLow);
+            t1 += lo;
+            hi += carry(t1, lo);
+            t2 += hi;
+            long t3 = carry(t2, hi);
+            lo = aHigh * bHigh;
+            hi = unsignedMultiplyHigh(aHigh, bHigh);
+            t2 += lo;
+            hi += carry(t2, lo);
+            t3 += hi;
+            /*
+             * Two word-by-word REDC rounds: adding u * m, with
+             * u = t0 * (-m^(-1)) mod 2^64, clears the low word, which is then
+             * dropped; the result is below 2m
+             */
+            long u = t0 * this.mNegInverse;
+            lo = u * this.mLow;
+            hi = unsignedMultiplyHigh(u, this.mLow);
+            t0 += lo;
+            hi += carry(t0, lo);
+            t1 += hi;
+            long c = carry(t1, hi);
+            lo = u * this.mHigh;
+            hi = unsignedMultiplyHigh(u, this.mHigh);
+            t1 += lo;
+            c += carry(t1, lo);
+            hi += c;
+            t2 += hi;
+            t3 += carry(t2, hi);
+
+            u = t1 * this.mNegInverse;
+            lo = u * this.mLow;
+            hi = unsignedMultiplyHigh(u, this.mLow);
+            t1 += lo;
+            hi += carry(t1, lo);
+            t2 += hi;
+            c = carry(t2, hi);
+            lo = u * this.mHigh;
+            hi = unsignedMultiplyHigh(u, this.mHigh);
+            t2 += lo;
+            c += carry(t2, lo);
+            t3 += hi + c;
+            this.high = t3;
+            this.low = t2;
+            this.reduceOnce();
+        }
+
+        /**
+         * Subtracts m from (high, low) if it is at least m.
+         *
+         * @requires (high, low) < 2m
+         */
+        private void reduceOnce() {
+            if (this.high > this.mHigh || (this.high == this.mHigh
+                    && Long.compareUnsigned(this.low, this.mLow) >= 0)) {
+                long borrow = 0;
+                if (Long.compareUnsigned(this.low, this.mLow) < 0) {
+                    borrow = 1;
+                }
+                this.low -= this.mLow;
+                this.high -= this.mHigh + borrow;
+            }
+        }
+
+        /**
+         * Sets (high, low) to x * x * R^(-1) + c mod m, one step of Pollard's
+         * iteration.
+         *
+         * @param xHigh
+         *            high word of the current value
+         * @param xLow
+         *            low word of the current value
+         * @param cHigh
+         *            high word of the constant
+         * @param cLow
+         *            low word of the constant
+         * @requires x < m and c < m
+         */
+        void step(long xHigh, long xLow, long cHigh, long cLow) {
+            this.multiply(xHigh, xLow, xHigh, xLow);
+            this.low += cLow;
+            this.high += cHigh + carry(this.low, cLow);
+            this.reduceOnce();
+        }
+
+        /**
+         * Sets (high, low) to |a - b|.
+         *
+         * @param aHigh
+         *            high word of a
+         * @param aLow
+         *            low word of a
+         * @param bHigh
+         *            high word of b
+         * @param bLow
+         *            low word of b
+         * @requires a < m and b < m
+         */
+        void difference(long aHigh, long aLow, long bHigh, long bLow) {
+            long xHigh = aHigh;
+            long xLow = aLow;
+            long yHigh = bHigh;
+            long yLow = bLow;
+            if (aHigh < bHigh || (aHigh == bHigh
+                    && Long.compareUnsigned(aLow, bLow) < 0)) {
+                xHigh = bHigh;
+                xLow = bLow;
+                yHigh = aHigh;
+                yLow = aLow;
+            }
+            long borrow = 0;
+            if (Long.compareUnsigned(xLow, yLow) < 0) {
+                borrow = 1;
+            }
+            this.low = xLow - yLow;
+            this.high = xHigh - yHigh - borrow;
+        }
+
+        /**
+         * Sets (high, low) to a * R mod m.
+         *
+         * @param aHigh
+         *            high word of a
+         * @param aLow
+         *            low word of a
+         * @requires a < m
+         */
+        void toMontgomery(long aHigh, long aLow) {
+            this.multiply(aHigh, aLow, this.r2High, this.r2Low);
+        }
+
+        /**
+         * Reports whether gcd(a, m) = 1.
+         *
+         * @param aHigh
+         *            high word of a
+         * @param aLow
+         *            low word of a
+         * @return true iff gcd(a, m) = 1
+         * @requires a < m
+         */
+        boolean isUnitGcd(long aHigh, long aLow) {
+            this.binaryGcd(aHigh, aLow);
+            return this.high == 0 && this.low == 1;
+        }
+
+        /**
+         * Returns gcd(a, m) as a new NaturalNumber4.
+         *
+         * @param aHigh
+         *            high word of a
+         * @param aLow
+         *            low word of a
+         * @return gcd(a, m)
+         * @requires a < m
+         */
+        NaturalNumber4 gcd(long aHigh, long aLow) {
+            this.binaryGcd(aHigh, aLow);
+            return natural(this.high, this.low);
+        }
+
+        /**
+         * Sets (high, low) to gcd(a, m), by Stein's binary algorithm; m is
+         * odd, so no common factor of 2 needs to be tracked.
+         *
+         * @param aHigh
+         *            high word of a
+         * @param aLow
+         *            low word of a
+         * @requires a < m
+         */
+        private void binaryGcd(long aHigh, long aLow) {
+            long uHigh = this.mHigh;
+            long uLow = this.mLow;
+            long vHigh = aHigh;
+            long vLow = aLow;
+            while (vHigh != 0 || vLow != 0) {
+                /*
+                 * Strip the factors of 2 from v; u stays odd
+                 */
+                int zeros;
+                if (vLow == 0) {
+                    vLow = vHigh;
+                    vHigh = 0;
+                    zeros = Long.numberOfTrailingZeros(vLow);
+                    vLow >>>= zeros;
+                } else {
+                    zeros = Long.numberOfTrailingZeros(vLow);
+                    if (zeros > 0) {
+                        vLow = (vLow >>> zeros)
+                                | (vHigh << (WORD_BITS - zeros));
+                        vHigh >>>= zeros;
+                    }
+                }
+                if (uHigh > vHigh || (uHigh == vHigh
+                        && Long.compareUnsigned(uLow, vLow) > 0)) {
+                    long swap = uHigh;
+                    uHigh = vHigh;
+                    vHigh = swap;
+                    swap = uLow;
+                    uLow = vLow;
+                    vLow = swap;
+                }
+                long borrow = 0;
+                if (Long.compareUnsigned(vLow, uLow) < 0) {
+                    borrow = 1;
+                }
+                vLow -= uLow;
+                vHigh -= uHigh + borrow;
+            }
+            this.high = uHigh;
+            this.low = uLow;
+        }
+
+    }
+
+}
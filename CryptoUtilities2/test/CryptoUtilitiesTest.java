@@ -1,5 +1,10 @@
 import static org.junit.Assert.assertEquals;
 
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
 import org.junit.Test;
 
 import components.naturalnumber.NaturalNumber;
@@ -11,6 +16,59 @@ import components.naturalnumber.NaturalNumber2;
  */
 public class CryptoUtilitiesTest {
 
+    /*
+     * Tests of randomNumber
+     */
+
+    // Testing randomNumber with a one-digit bound: every value shows up.
+    @Test
+    public void testRandomNumber_9() {
+        NaturalNumber n = new NaturalNumber2(9);
+        NaturalNumber nExpected = new NaturalNumber2(9);
+        final int samples = 1000;
+        boolean[] seen = new boolean[10];
+        for (int i = 0; i < samples; i++) {
+            NaturalNumber r = CryptoUtilities2.randomNumber(n);
+            assertEquals(true, r.compareTo(n) <= 0);
+            seen[r.toInt()] = true;
+        }
+        for (boolean s : seen) {
+            assertEquals(true, s);
+        }
+        assertEquals(nExpected, n);
+    }
+
+    // Testing randomNumber with a 40-digit bound.
+    @Test
+    public void testRandomNumber_40Digits() {
+        NaturalNumber n = new NaturalNumber2(
+                "1000000000000000000000000000000000000001");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "1000000000000000000000000000000000000001");
+        final int samples = 100;
+        for (int i = 0; i < samples; i++) {
+            NaturalNumber r = CryptoUtilities2.randomNumber(n);
+            assertEquals(true, r.compareTo(n) <= 0);
+        }
+        assertEquals(nExpected, n);
+    }
+
+    // Testing randomNumber with a caller-supplied SecureRandom.
+    @Test
+    public void testRandomNumber_40DigitsSecureRandom() {
+        NaturalNumber n = new NaturalNumber2(
+                "1000000000000000000000000000000000000001");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "1000000000000000000000000000000000000001");
+        SecureRandom random = new SecureRandom();
+        final int samples = 100;
+        for (int i = 0; i < samples; i++) {
+            NaturalNumber r = CryptoUtilities2.randomNumber(n, random);
+            assertEquals(true, r.compareTo(n) <= 0);
+        }
+        assertEquals(nExpected, n);
+    }
+
     /*
      * Tests of reduceToGCD
      */
@@ -21,7 +79,7 @@ public class CryptoUtilitiesTest {
         NaturalNumber nExpected = new NaturalNumber2(0);
         NaturalNumber m = new NaturalNumber2(0);
         NaturalNumber mExpected = new NaturalNumber2(0);
-        CryptoUtilities.reduceToGCD(n, m);
+        CryptoUtilities2.reduceToGCD(n, m);
         assertEquals(nExpected, n);
         assertEquals(mExpected, m);
     }
@@ -32,7 +90,51 @@ public class CryptoUtilitiesTest {
         NaturalNumber nExpected = new NaturalNumber2(3);
         NaturalNumber m = new NaturalNumber2(21);
         NaturalNumber mExpected = new NaturalNumber2(0);
-        CryptoUtilities.reduceToGCD(n, m);
+        CryptoUtilities2.reduceToGCD(n, m);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public void testReduceToGCD_1071_462_NaturalNumber4() {
+        NaturalNumber n = new NaturalNumber4(1071);
+        NaturalNumber nExpected = new NaturalNumber4(21);
+        NaturalNumber m = new NaturalNumber4(462);
+        NaturalNumber mExpected = new NaturalNumber4(0);
+        CryptoUtilities2.reduceToGCD(n, m);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+    }
+
+    /*
+     * Tests of extendedGCD and modInverse
+     */
+
+    @Test
+    public void testExtendedGCD_240_46() {
+        NaturalNumber n = new NaturalNumber2(240);
+        NaturalNumber nExpected = new NaturalNumber2(2);
+        NaturalNumber m = new NaturalNumber2(46);
+        NaturalNumber mExpected = new NaturalNumber2(0);
+        NaturalNumber x = new NaturalNumber2();
+        NaturalNumber xExpected = new NaturalNumber2(14);
+        NaturalNumber y = new NaturalNumber2();
+        NaturalNumber yExpected = new NaturalNumber2(73);
+        CryptoUtilities2.extendedGCD(n, m, x, y);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+        assertEquals(xExpected, x);
+        assertEquals(yExpected, y);
+    }
+
+    // Testing modInverse with the textbook RSA exponents e = 17, phi = 3120.
+    @Test
+    public void testModInverse_17_3120() {
+        NaturalNumber n = new NaturalNumber2(17);
+        NaturalNumber nExpected = new NaturalNumber2(2753);
+        NaturalNumber m = new NaturalNumber2(3120);
+        NaturalNumber mExpected = new NaturalNumber2(3120);
+        CryptoUtilities2.modInverse(n, m);
         assertEquals(nExpected, n);
         assertEquals(mExpected, m);
     }
@@ -45,7 +147,7 @@ public class CryptoUtilitiesTest {
     public void testIsEven_0() {
         NaturalNumber n = new NaturalNumber2(0);
         NaturalNumber nExpected = new NaturalNumber2(0);
-        boolean result = CryptoUtilities.isEven(n);
+        boolean result = CryptoUtilities2.isEven(n);
         assertEquals(nExpected, n);
         assertEquals(true, result);
     }
@@ -54,7 +156,7 @@ public class CryptoUtilitiesTest {
     public void testIsEven_1() {
         NaturalNumber n = new NaturalNumber2(1);
         NaturalNumber nExpected = new NaturalNumber2(1);
-        boolean result = CryptoUtilities.isEven(n);
+        boolean result = CryptoUtilities2.isEven(n);
         assertEquals(nExpected, n);
         assertEquals(false, result);
     }
@@ -71,7 +173,7 @@ public class CryptoUtilitiesTest {
         NaturalNumber pExpected = new NaturalNumber2(0);
         NaturalNumber m = new NaturalNumber2(2);
         NaturalNumber mExpected = new NaturalNumber2(2);
-        CryptoUtilities.powerMod(n, p, m);
+        CryptoUtilities2.powerMod(n, p, m);
         assertEquals(nExpected, n);
         assertEquals(pExpected, p);
         assertEquals(mExpected, m);
@@ -85,7 +187,69 @@ public class CryptoUtilitiesTest {
         NaturalNumber pExpected = new NaturalNumber2(18);
         NaturalNumber m = new NaturalNumber2(19);
         NaturalNumber mExpected = new NaturalNumber2(19);
-        CryptoUtilities.powerMod(n, p, m);
+        CryptoUtilities2.powerMod(n, p, m);
+        assertEquals(nExpected, n);
+        assertEquals(pExpected, p);
+        assertEquals(mExpected, m);
+    }
+
+    // Testing powerMod with a large odd modulus (Montgomery path).
+    @Test
+    public void testPowerMod_123456789_987654321_1000000007() {
+        NaturalNumber n = new NaturalNumber2(123456789);
+        NaturalNumber nExpected = new NaturalNumber2(652541198);
+        NaturalNumber p = new NaturalNumber2(987654321);
+        NaturalNumber pExpected = new NaturalNumber2(987654321);
+        NaturalNumber m = new NaturalNumber2(1000000007);
+        NaturalNumber mExpected = new NaturalNumber2(1000000007);
+        CryptoUtilities2.powerMod(n, p, m);
+        assertEquals(nExpected, n);
+        assertEquals(pExpected, p);
+        assertEquals(mExpected, m);
+    }
+
+    // Testing powerMod with an even modulus (no Montgomery form).
+    @Test
+    public void testPowerMod_3_1000_1024() {
+        NaturalNumber n = new NaturalNumber2(3);
+        NaturalNumber nExpected = new NaturalNumber2(801);
+        NaturalNumber p = new NaturalNumber2(1000);
+        NaturalNumber pExpected = new NaturalNumber2(1000);
+        NaturalNumber m = new NaturalNumber2(1024);
+        NaturalNumber mExpected = new NaturalNumber2(1024);
+        CryptoUtilities2.powerMod(n, p, m);
+        assertEquals(nExpected, n);
+        assertEquals(pExpected, p);
+        assertEquals(mExpected, m);
+    }
+
+    // Testing powerMod with a 19-digit even modulus (64-bit path).
+    @Test
+    public void testPowerMod_123456789_LongMax_LongMaxMinusOne() {
+        NaturalNumber n = new NaturalNumber2(123456789);
+        NaturalNumber nExpected = new NaturalNumber2("2223996148842538995");
+        NaturalNumber p = new NaturalNumber2("9223372036854775807");
+        NaturalNumber pExpected = new NaturalNumber2("9223372036854775807");
+        NaturalNumber m = new NaturalNumber2("9223372036854775806");
+        NaturalNumber mExpected = new NaturalNumber2("9223372036854775806");
+        CryptoUtilities2.powerMod(n, p, m);
+        assertEquals(nExpected, n);
+        assertEquals(pExpected, p);
+        assertEquals(mExpected, m);
+    }
+
+    // Testing powerMod with a modulus above 2^63 that is not coprime to 10.
+    @Test
+    public void testPowerMod_3_1000_10to30() {
+        NaturalNumber n = new NaturalNumber2(3);
+        NaturalNumber nExpected = new NaturalNumber2(
+                "614366132173102768902855220001");
+        NaturalNumber p = new NaturalNumber2(1000);
+        NaturalNumber pExpected = new NaturalNumber2(1000);
+        NaturalNumber m = new NaturalNumber2("1000000000000000000000000000000");
+        NaturalNumber mExpected = new NaturalNumber2(
+                "1000000000000000000000000000000");
+        CryptoUtilities2.powerMod(n, p, m);
         assertEquals(nExpected, n);
         assertEquals(pExpected, p);
         assertEquals(mExpected, m);
@@ -96,7 +260,7 @@ public class CryptoUtilitiesTest {
     public void testIsWitnessToCompositeness_1() {
         NaturalNumber w = new NaturalNumber2(2);
         NaturalNumber n = new NaturalNumber2(5);
-        boolean result = CryptoUtilities.isWitnessToCompositeness(w, n);
+        boolean result = CryptoUtilities2.isWitnessToCompositeness(w, n);
         assertEquals(false, result);
     }
 
@@ -104,7 +268,7 @@ public class CryptoUtilitiesTest {
     @Test
     public void testIsPrime1_1() {
         NaturalNumber n = new NaturalNumber2(5);
-        boolean result = CryptoUtilities.isPrime1(n);
+        boolean result = CryptoUtilities2.isPrime1(n);
         assertEquals(true, result);
     }
 
@@ -112,7 +276,34 @@ public class CryptoUtilitiesTest {
     @Test
     public void testIsPrime1_2() {
         NaturalNumber n = new NaturalNumber2(4);
-        boolean result = CryptoUtilities.isPrime1(n);
+        boolean result = CryptoUtilities2.isPrime1(n);
+        assertEquals(false, result);
+    }
+
+    // Testing isPrime1 with a Fermat pseudoprime to base 2 (64-bit path).
+    @Test
+    public void testIsPrime1_3215031751() {
+        NaturalNumber n = new NaturalNumber2("3215031751");
+        boolean result = CryptoUtilities2.isPrime1(n);
+        assertEquals(false, result);
+    }
+
+    // Testing isPrime1 with the Mersenne prime 2^89 - 1 (base-2 path).
+    @Test
+    public void testIsPrime1_Mersenne89() {
+        NaturalNumber n = new NaturalNumber2("618970019642690137449562111");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "618970019642690137449562111");
+        boolean result = CryptoUtilities2.isPrime1(n);
+        assertEquals(nExpected, n);
+        assertEquals(true, result);
+    }
+
+    // Testing isPrime1 with (2^61 - 1) * (2^31 - 1) (base-2 path).
+    @Test
+    public void testIsPrime1_4951760154835678088235319297() {
+        NaturalNumber n = new NaturalNumber2("4951760154835678088235319297");
+        boolean result = CryptoUtilities2.isPrime1(n);
         assertEquals(false, result);
     }
 
@@ -120,7 +311,7 @@ public class CryptoUtilitiesTest {
     @Test
     public void testIsPrime2_1() {
         NaturalNumber n = new NaturalNumber2(5);
-        boolean result = CryptoUtilities.isPrime2(n);
+        boolean result = CryptoUtilities2.isPrime2(n);
         assertEquals(true, result);
     }
 
@@ -128,7 +319,225 @@ public class CryptoUtilitiesTest {
     @Test
     public void testIsPrime2_2() {
         NaturalNumber n = new NaturalNumber2(4);
-        boolean result = CryptoUtilities.isPrime2(n);
+        boolean result = CryptoUtilities2.isPrime2(n);
+        assertEquals(false, result);
+    }
+
+    // Testing isPrime2 with a Carmichael number.
+    @Test
+    public void testIsPrime2_561() {
+        NaturalNumber n = new NaturalNumber2(561);
+        boolean result = CryptoUtilities2.isPrime2(n);
+        assertEquals(false, result);
+    }
+
+    // Testing isPrime2 with a strong pseudoprime to base 2.
+    @Test
+    public void testIsPrime2_2047() {
+        NaturalNumber n = new NaturalNumber2(2047);
+        boolean result = CryptoUtilities2.isPrime2(n);
+        assertEquals(false, result);
+    }
+
+    // Testing isPrime2 with the largest prime below 2^63.
+    @Test
+    public void testIsPrime2_9223372036854775783() {
+        NaturalNumber n = new NaturalNumber2("9223372036854775783");
+        NaturalNumber nExpected = new NaturalNumber2("9223372036854775783");
+        boolean result = CryptoUtilities2.isPrime2(n);
+        assertEquals(nExpected, n);
+        assertEquals(true, result);
+    }
+
+    // Testing isPrime2 with a prime above the deterministic bound.
+    @Test
+    public void testIsPrime2_Mersenne127() {
+        NaturalNumber n = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        boolean result = CryptoUtilities2.isPrime2(n);
+        assertEquals(true, result);
+    }
+
+    // Testing isPrime2 with a prime whose test is abandoned before any round.
+    @Test
+    public void testIsPrime2_Mersenne127Abandoned() {
+        NaturalNumber n = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        boolean result = CryptoUtilities2.isPrime2(n, () -> true);
         assertEquals(false, result);
     }
+
+    // Testing isPrime2 with a prime whose test is never abandoned.
+    @Test
+    public void testIsPrime2_Mersenne127NotAbandoned() {
+        NaturalNumber n = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        boolean result = CryptoUtilities2.isPrime2(n, () -> false);
+        assertEquals(true, result);
+    }
+
+    // Testing isPrime3 with a prime beyond a long.
+    @Test
+    public void testIsPrime3_Mersenne127() {
+        NaturalNumber n = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        boolean result = CryptoUtilities2.isPrime3(n);
+        assertEquals(nExpected, n);
+        assertEquals(true, result);
+    }
+
+    // Testing isPrime3 with a Carmichael number that is a strong
+    // pseudoprime to base 2 (so only the Lucas part catches it).
+    @Test
+    public void testIsPrime3_StrongPseudoprimeCarmichael() {
+        NaturalNumber n = new NaturalNumber2("1296130680792107165959489");
+        boolean result = CryptoUtilities2.isPrime3(n);
+        assertEquals(false, result);
+    }
+
+    // Testing isPrime3 with the square of a prime.
+    @Test
+    public void testIsPrime3_SquareOfMersenne61() {
+        NaturalNumber n = new NaturalNumber2(
+                "5316911983139663487003542222693990401");
+        boolean result = CryptoUtilities2.isPrime3(n);
+        assertEquals(false, result);
+    }
+
+    // Testing generateNextLikelyPrime with isPrime3.
+    @Test
+    public void testGenerateNextLikelyPrime_IsPrime3_10to30() {
+        NaturalNumber n = new NaturalNumber2("1000000000000000000000000000000");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "1000000000000000000000000000057");
+        CryptoUtilities2.generateNextLikelyPrime(n,
+                CryptoUtilities2::isPrime3);
+        assertEquals(nExpected, n);
+    }
+
+    // Testing generateNextLikelyPrime with a composite number.
+    @Test
+    public void testGenerateNextLikelyPrime_24() {
+        NaturalNumber n = new NaturalNumber2(24);
+        NaturalNumber nExpected = new NaturalNumber2(29);
+        CryptoUtilities2.generateNextLikelyPrime(n);
+        assertEquals(nExpected, n);
+    }
+
+    // Testing generateNextLikelyPrime with a 13-digit number.
+    @Test
+    public void testGenerateNextLikelyPrime_1000000000000() {
+        NaturalNumber n = new NaturalNumber2("1000000000000");
+        NaturalNumber nExpected = new NaturalNumber2("1000000000039");
+        CryptoUtilities2.generateNextLikelyPrime(n);
+        assertEquals(nExpected, n);
+    }
+
+    // Testing the parallel generateNextLikelyPrime against the sequential one.
+    @Test
+    public void testGenerateNextLikelyPrime_1000000000000_4() {
+        NaturalNumber n = new NaturalNumber2("1000000000000");
+        NaturalNumber nExpected = new NaturalNumber2("1000000000039");
+        CryptoUtilities2.generateNextLikelyPrime(n, 4);
+        assertEquals(nExpected, n);
+    }
+
+    // Testing that the parallel generateNextLikelyPrime keeps the caller's
+    // interrupt when it gives up.
+    @Test
+    public void testGenerateNextLikelyPrime_InterruptedKeepsInterrupt() {
+        NaturalNumber n = new NaturalNumber2("1000000000000");
+        boolean thrown = false;
+        Thread.currentThread().interrupt();
+        try {
+            CryptoUtilities2.generateNextLikelyPrime(n, 4);
+        } catch (IllegalStateException e) {
+            thrown = true;
+        }
+        boolean interrupted = Thread.interrupted();
+        assertEquals(true, thrown);
+        assertEquals(true, interrupted);
+    }
+
+    // Testing the parallel generateNextLikelyPrime beyond a long, where
+    // workers abandon Miller-Rabin rounds once a smaller prime is found.
+    @Test
+    public void testGenerateNextLikelyPrime_10to30_4() {
+        NaturalNumber n = new NaturalNumber2(
+                "1000000000000000000000000000000");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "1000000000000000000000000000057");
+        CryptoUtilities2.generateNextLikelyPrime(n, 4);
+        assertEquals(nExpected, n);
+    }
+
+    // Testing factor with a 12-digit composite (long path).
+    @Test
+    public void testFactor_600851475143() {
+        NaturalNumber n = new NaturalNumber2("600851475143");
+        NaturalNumber nExpected = new NaturalNumber2("600851475143");
+        List<NaturalNumber> result = CryptoUtilities2.factor(n);
+        List<NaturalNumber> expected = new ArrayList<>();
+        final int[] primes = { 71, 839, 1471, 6857 };
+        for (int p : primes) {
+            expected.add(new NaturalNumber2(p));
+        }
+        assertEquals(expected, result);
+        assertEquals(nExpected, n);
+    }
+
+    // Testing factor with a 23-digit semiprime (rho beyond a long).
+    @Test
+    public void testFactor_14017679472409315693453() {
+        NaturalNumber n = new NaturalNumber2("14017679472409315693453");
+        List<NaturalNumber> result = CryptoUtilities2.factor(n);
+        List<NaturalNumber> expected = new ArrayList<>();
+        expected.add(new NaturalNumber2("9263920537"));
+        expected.add(new NaturalNumber2("1513147637269"));
+        assertEquals(expected, result);
+    }
+
+    // Testing factor with a 30-digit semiprime (rho on two words).
+    @Test
+    public void testFactor_594759956450159064343946919197() {
+        NaturalNumber n = new NaturalNumber2(
+                "594759956450159064343946919197");
+        List<NaturalNumber> result = CryptoUtilities2.factor(n);
+        List<NaturalNumber> expected = new ArrayList<>();
+        expected.add(new NaturalNumber2("49446566815909"));
+        expected.add(new NaturalNumber2("12028336743063833"));
+        assertEquals(expected, result);
+    }
+
+    // Testing factor with a prime power.
+    @Test
+    public void testFactor_1024() {
+        NaturalNumber n = new NaturalNumber2(1024);
+        List<NaturalNumber> result = CryptoUtilities2.factor(n);
+        final int exponent = 10;
+        assertEquals(exponent, result.size());
+        assertEquals(new NaturalNumber2(2), result.get(exponent - 1));
+    }
+
+    // Testing isPrimeBatch on small, 64-bit and larger numbers, in order.
+    @Test
+    public void testIsPrimeBatch_Mixed() {
+        String[] values = { "2", "4", "561", "2047", "9223372036854775783",
+            "170141183460469231731687303715884105727",
+            "170141183460469231731687303715884105729", "29" };
+        List<NaturalNumber> numbers = new ArrayList<>();
+        for (String value : values) {
+            numbers.add(new NaturalNumber2(value));
+        }
+        BitSet expected = new BitSet();
+        expected.set(0);
+        expected.set(4);
+        expected.set(5);
+        expected.set(7);
+        BitSet result = CryptoUtilities2.isPrimeBatch(numbers, 2);
+        assertEquals(expected, result);
+        assertEquals(new NaturalNumber2(561), numbers.get(2));
+    }
 }
@@ -0,0 +1,216 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * Tests for NaturalNumber4, including running CryptoUtilities2 on it.
+ *
+ * @author Ayman Abumaike
+ *
+ */
+public class NaturalNumber4Test {
+
+    /**
+     * Returns a string of {@code count} copies of {@code c}.
+     *
+     * @param c
+     *            the character
+     * @param count
+     *            number of copies
+     * @return the string
+     */
+    private static String repeat(char c, int count) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    /*
+     * Tests of constructors and kernel methods
+     */
+
+    @Test
+    public void testConstructorString_LargerThanOneLimb() {
+        NaturalNumber n = new NaturalNumber4("123456789012345678901234567890");
+        assertEquals("123456789012345678901234567890", n.toString());
+    }
+
+    @Test
+    public void testMultiplyBy10_4294967295_7() {
+        NaturalNumber n = new NaturalNumber4("4294967295");
+        NaturalNumber nExpected = new NaturalNumber4("42949672957");
+        n.multiplyBy10(7);
+        assertEquals(nExpected, n);
+    }
+
+    @Test
+    public void testDivideBy10_42949672957() {
+        NaturalNumber n = new NaturalNumber4("42949672957");
+        NaturalNumber nExpected = new NaturalNumber4("4294967295");
+        int digit = n.divideBy10();
+        assertEquals(nExpected, n);
+        assertEquals(7, digit);
+    }
+
+    @Test
+    public void testEquals_NaturalNumber2() {
+        NaturalNumber n = new NaturalNumber4("98765432109876543210");
+        NaturalNumber n2 = new NaturalNumber2("98765432109876543210");
+        assertEquals(n2, n);
+        assertEquals(n2.hashCode(), n.hashCode());
+    }
+
+    /*
+     * Tests of overridden secondary methods
+     */
+
+    @Test
+    public void testDecrement_18446744073709551616() {
+        NaturalNumber n = new NaturalNumber4("18446744073709551616");
+        NaturalNumber nExpected = new NaturalNumber4("18446744073709551615");
+        n.decrement();
+        assertEquals(nExpected, n);
+    }
+
+    @Test
+    public void testMultiply_TwoLimbs() {
+        NaturalNumber n = new NaturalNumber4("18446744073709551615");
+        NaturalNumber m = new NaturalNumber4("18446744073709551615");
+        NaturalNumber nExpected = new NaturalNumber4(
+                "340282366920938463426481119284349108225");
+        n.multiply(m);
+        assertEquals(nExpected, n);
+    }
+
+    @Test
+    public void testMultiply_ToomSize() {
+        /*
+         * (10^3000 - 1) * (10^3000 + 1) = 10^6000 - 1; about 310 limbs each
+         */
+        final int digits = 3000;
+        NaturalNumber n = new NaturalNumber4(repeat('9', digits));
+        NaturalNumber m = new NaturalNumber4(
+                "1" + repeat('0', digits - 1) + "1");
+        NaturalNumber nExpected = new NaturalNumber4(repeat('9', 2 * digits));
+        n.multiply(m);
+        assertEquals(nExpected, n);
+    }
+
+    @Test
+    public void testMultiply_SquareKaratsubaSize() {
+        /*
+         * (10^1500 - 1)^2 = 10^3000 - 2 * 10^1500 + 1; about 156 limbs
+         */
+        final int digits = 1500;
+        NaturalNumber n = new NaturalNumber4(repeat('9', digits));
+        NaturalNumber m = new NaturalNumber4(repeat('9', digits));
+        NaturalNumber nExpected = new NaturalNumber4(repeat('9', digits - 1)
+                + "8" + repeat('0', digits - 1) + "1");
+        n.multiply(m);
+        assertEquals(nExpected, n);
+    }
+
+    @Test
+    public void testDivide_MultiLimbDivisor() {
+        NaturalNumber n = new NaturalNumber4(
+                "340282366920938463426481119284349108230");
+        NaturalNumber m = new NaturalNumber4("18446744073709551615");
+        NaturalNumber nExpected = new NaturalNumber4("18446744073709551615");
+        NaturalNumber rExpected = new NaturalNumber4(5);
+        NaturalNumber r = n.divide(m);
+        assertEquals(nExpected, n);
+        assertEquals(rExpected, r);
+    }
+
+    @Test
+    public void testBitLengthAndShifts() {
+        NaturalNumber4 n = new NaturalNumber4(5);
+        n.shiftLeft(100);
+        assertEquals(103, n.bitLength());
+        assertEquals(true, n.isEven());
+        assertEquals(true, n.testBit(100));
+        assertEquals(false, n.testBit(101));
+        n.shiftRight(99);
+        assertEquals(new NaturalNumber4(10), n);
+    }
+
+    @Test
+    public void testTruncate() {
+        NaturalNumber4 n = new NaturalNumber4(
+                "340282366920938463463374607431768211455");
+        n.truncate(70);
+        assertEquals(new NaturalNumber4("1180591620717411303423"), n);
+        n.truncate(64);
+        assertEquals(new NaturalNumber4("18446744073709551615"), n);
+        n.truncate(0);
+        assertEquals(new NaturalNumber4(0), n);
+    }
+
+    @Test
+    public void testSetFromLongAndToLong() {
+        NaturalNumber4 n = new NaturalNumber4();
+        n.setFromLong(Long.MAX_VALUE);
+        assertEquals(new NaturalNumber4("9223372036854775807"), n);
+        assertEquals(Long.MAX_VALUE, n.toLong());
+    }
+
+    /*
+     * Tests of CryptoUtilities2 on NaturalNumber4
+     */
+
+    @Test
+    public void testPowerMod_17_18_19() {
+        NaturalNumber n = new NaturalNumber4(17);
+        NaturalNumber nExpected = new NaturalNumber4(1);
+        NaturalNumber p = new NaturalNumber4(18);
+        NaturalNumber pExpected = new NaturalNumber4(18);
+        NaturalNumber m = new NaturalNumber4(19);
+        NaturalNumber mExpected = new NaturalNumber4(19);
+        CryptoUtilities2.powerMod(n, p, m);
+        assertEquals(nExpected, n);
+        assertEquals(pExpected, p);
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public void testPowerMod_7_12345_2to100() {
+        NaturalNumber n = new NaturalNumber4(7);
+        NaturalNumber nExpected = new NaturalNumber4(
+                "961162713373288692133717306055");
+        NaturalNumber p = new NaturalNumber4(12345);
+        NaturalNumber4 m = new NaturalNumber4(1);
+        m.shiftLeft(100);
+        CryptoUtilities2.powerMod(n, p, m);
+        assertEquals(nExpected, n);
+    }
+
+    @Test
+    public void testIsEven_1() {
+        NaturalNumber n = new NaturalNumber4(1);
+        NaturalNumber nExpected = new NaturalNumber4(1);
+        boolean result = CryptoUtilities2.isEven(n);
+        assertEquals(nExpected, n);
+        assertEquals(false, result);
+    }
+
+    @Test
+    public void testIsPrime2_Mersenne127() {
+        NaturalNumber n = new NaturalNumber4(
+                "170141183460469231731687303715884105727");
+        boolean result = CryptoUtilities2.isPrime2(n);
+        assertEquals(true, result);
+    }
+
+    @Test
+    public void testGenerateNextLikelyPrime_1000000000000() {
+        NaturalNumber n = new NaturalNumber4("1000000000000");
+        NaturalNumber nExpected = new NaturalNumber4("1000000000039");
+        CryptoUtilities2.generateNextLikelyPrime(n);
+        assertEquals(nExpected, n);
+    }
+}
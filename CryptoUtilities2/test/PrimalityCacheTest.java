@@ -0,0 +1,72 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * Tests for PrimalityCache.
+ *
+ * @author Ayman Abumaike
+ *
+ */
+public class PrimalityCacheTest {
+
+    @Test
+    public void testGetAndPut_Counters() {
+        PrimalityCache cache = new PrimalityCache(2);
+        NaturalNumber n = new NaturalNumber2("618970019642690137449562111");
+        assertEquals(null, cache.get(n));
+        cache.put(n, true);
+        assertEquals(Boolean.TRUE, cache.get(n));
+        assertEquals(Boolean.TRUE,
+                cache.get(new NaturalNumber4("618970019642690137449562111")));
+        assertEquals(null,
+                cache.get(new NaturalNumber2("618970019642690137449562113")));
+        assertEquals(2, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testPut_EvictsLeastRecentlyUsed() {
+        PrimalityCache cache = new PrimalityCache(2);
+        NaturalNumber a = new NaturalNumber2("100000000000000000000000001");
+        NaturalNumber b = new NaturalNumber2("100000000000000000000000003");
+        NaturalNumber c = new NaturalNumber2("100000000000000000000000007");
+        cache.put(a, false);
+        cache.put(b, false);
+        cache.get(a);
+        cache.put(c, true);
+        assertEquals(2, cache.size());
+        assertEquals(Boolean.FALSE, cache.get(a));
+        assertEquals(null, cache.get(b));
+        assertEquals(Boolean.TRUE, cache.get(c));
+    }
+
+    @Test
+    public void testIsPrime2_UsesCache() {
+        PrimalityCache cache = new PrimalityCache(16);
+        CryptoUtilities2.setPrimalityCache(cache);
+        try {
+            NaturalNumber p = new NaturalNumber2(
+                    "170141183460469231731687303715884105727");
+            NaturalNumber pExpected = new NaturalNumber2(
+                    "170141183460469231731687303715884105727");
+            assertEquals(true, CryptoUtilities2.isPrime2(p));
+            assertEquals(true, CryptoUtilities2.isPrime2(p));
+            assertEquals(pExpected, p);
+            assertEquals(1, cache.hits());
+            assertEquals(1, cache.misses());
+            /*
+             * Numbers that fit in a long bypass the cache
+             */
+            CryptoUtilities2.isPrime2(new NaturalNumber2("1000000007"));
+            assertEquals(1, cache.size());
+        } finally {
+            CryptoUtilities2.setPrimalityCache(null);
+        }
+    }
+
+}
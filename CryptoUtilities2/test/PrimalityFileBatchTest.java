@@ -0,0 +1,216 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Tests for PrimalityFileBatch.
+ *
+ * @author Ayman Abumaike
+ *
+ */
+public class PrimalityFileBatchTest {
+
+    /**
+     * Lines that are not a natural number greater than 1, with the verdict
+     * line expected for each.
+     */
+    private static final String[][] INVALID = { { "0", "0 invalid" },
+            { "1", "1 invalid" }, { "abc", "abc invalid" }, { "", " invalid" },
+            { "-5", "-5 invalid" }, { "007", "007 invalid" } };
+
+    /**
+     * Numbers beyond a long, with the verdict line expected for each: 2^127 -
+     * 1 is prime, and 2^127 + 1 is a multiple of 3.
+     */
+    private static final String[][] LARGE = {
+            { "170141183460469231731687303715884105727",
+                    "170141183460469231731687303715884105727 prime" },
+            { "170141183460469231731687303715884105729",
+                    "170141183460469231731687303715884105729 composite" } };
+
+    /**
+     * Every how many lines an invalid or a large line is inserted.
+     */
+    private static final int SPECIAL_EVERY = 25;
+
+    /**
+     * Largest small number in the input; with the special lines, the input
+     * spans three chunks, the last one partial.
+     */
+    private static final int LAST_SMALL = 650;
+
+    /**
+     * Reports whether n is prime, by trial division.
+     *
+     * @param n
+     *            the number
+     * @return true iff n is prime
+     * @requires n > 1
+     */
+    private static boolean isPrime(int n) {
+        boolean isPrime = true;
+        int d = 2;
+        while (isPrime && d * d <= n) {
+            isPrime = n % d != 0;
+            d++;
+        }
+        return isPrime;
+    }
+
+    /**
+     * Writes the input file and returns the verdict lines expected for it.
+     * Small numbers 2, 3, ..., LAST_SMALL are written in order, with an
+     * invalid or a large line (and " 17 ", which is valid once trimmed) after
+     * every SPECIAL_EVERY of them.
+     *
+     * @param input
+     *            the input file
+     * @return the expected verdict lines, in order
+     */
+    private static List<String> writeInput(File input) {
+        List<String> expected = new ArrayList<>();
+        SimpleWriter out = new SimpleWriter1L(input.getPath());
+        int special = 0;
+        for (int n = 2; n <= LAST_SMALL; n++) {
+            out.println(n);
+            if (isPrime(n)) {
+                expected.add(n + " prime");
+            } else {
+                expected.add(n + " composite");
+            }
+            if (n % SPECIAL_EVERY == 0) {
+                String[] line;
+                if (special % 2 == 0) {
+                    line = INVALID[(special / 2) % INVALID.length];
+                } else {
+                    line = LARGE[(special / 2) % LARGE.length];
+                }
+                out.println(line[0]);
+                expected.add(line[1]);
+                out.println(" 17 ");
+                expected.add("17 prime");
+                special++;
+            }
+        }
+        out.close();
+        return expected;
+    }
+
+    /**
+     * Returns the lines of a file.
+     *
+     * @param file
+     *            the file
+     * @return its lines, in order
+     */
+    private static List<String> readLines(File file) {
+        List<String> lines = new ArrayList<>();
+        SimpleReader in = new SimpleReader1L(file.getPath());
+        while (!in.atEOS()) {
+            lines.add(in.nextLine());
+        }
+        in.close();
+        return lines;
+    }
+
+    /**
+     * Runs the batch on a temporary file of more than two chunks, and checks
+     * the verdict lines (in input order) and the summary counts.
+     *
+     * @param parallelism
+     *            number of worker threads
+     * @throws IOException
+     *             if the temporary files cannot be created
+     */
+    private static void checkRun(int parallelism) throws IOException {
+        File input = File.createTempFile("primality", ".in");
+        File output = File.createTempFile("primality", ".out");
+        File summary = File.createTempFile("primality", ".report");
+        try {
+            List<String> expected = writeInput(input);
+            SimpleReader in = new SimpleReader1L(input.getPath());
+            SimpleWriter out = new SimpleWriter1L(output.getPath());
+            SimpleWriter report = new SimpleWriter1L(summary.getPath());
+            PrimalityFileBatch.run(in, out, report, new NaturalNumber4(),
+                    parallelism);
+            in.close();
+            out.close();
+            report.close();
+
+            List<String> result = readLines(output);
+            assertEquals(expected.size(), result.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i), result.get(i));
+            }
+            int primes = 0;
+            int invalid = 0;
+            for (String line : expected) {
+                if (line.endsWith(" prime")) {
+                    primes++;
+                } else if (line.endsWith(" invalid")) {
+                    invalid++;
+                }
+            }
+            int composites = expected.size() - primes - invalid;
+            List<String> reportLines = readLines(summary);
+            assertEquals(1, reportLines.size());
+            String line = reportLines.get(0);
+            assertTrue(line.startsWith("tested " + expected.size() + " lines"));
+            assertTrue(line.contains(" with " + parallelism
+                    + " worker thread(s): " + primes + " prime, " + composites
+                    + " composite, " + invalid + " invalid ("));
+        } finally {
+            input.delete();
+            output.delete();
+            summary.delete();
+        }
+    }
+
+    @Test
+    public void testRun_Parallelism1() throws IOException {
+        checkRun(1);
+    }
+
+    @Test
+    public void testRun_Parallelism4() throws IOException {
+        checkRun(4);
+    }
+
+    @Test
+    public void testRun_InterruptedKeepsInterrupt() throws IOException {
+        File input = File.createTempFile("primality", ".in");
+        File output = File.createTempFile("primality", ".out");
+        try {
+            writeInput(input);
+            SimpleReader in = new SimpleReader1L(input.getPath());
+            SimpleWriter out = new SimpleWriter1L(output.getPath());
+            boolean thrown = false;
+            Thread.currentThread().interrupt();
+            try {
+                PrimalityFileBatch.run(in, out, out, new NaturalNumber4(), 2);
+            } catch (IllegalStateException e) {
+                thrown = true;
+            }
+            boolean interrupted = Thread.interrupted();
+            in.close();
+            out.close();
+            assertEquals(true, thrown);
+            assertEquals(true, interrupted);
+        } finally {
+            input.delete();
+            output.delete();
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for PrimeSieve.
+ *
+ * @author Ayman Abumaike
+ *
+ */
+public class PrimeSieveTest {
+
+    @Test
+    public void testPrimesInRange_0_30() {
+        long[] expected = { 2, 3, 5, 7, 11, 13, 17, 19, 23, 29 };
+        assertArrayEquals(expected, PrimeSieve.primesInRange(0, 30));
+    }
+
+    @Test
+    public void testPrimesInRange_1000000000000_1000000000070() {
+        long[] expected = { 1000000000039L, 1000000000061L, 1000000000063L };
+        assertArrayEquals(expected,
+                PrimeSieve.primesInRange(1000000000000L, 1000000000070L));
+    }
+
+    @Test
+    public void testPrimesInRange_Empty() {
+        assertEquals(0, PrimeSieve.primesInRange(24, 28).length);
+    }
+
+    @Test
+    public void testCountPrimes_0_10000000() {
+        assertEquals(664579, PrimeSieve.countPrimes(0, 10000000));
+    }
+
+    @Test
+    public void testCountPrimes_2_2() {
+        assertEquals(1, PrimeSieve.countPrimes(2, 2));
+    }
+
+}
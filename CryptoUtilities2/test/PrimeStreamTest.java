@@ -0,0 +1,54 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * Tests for PrimeStream.
+ *
+ * @author Ayman Abumaike
+ *
+ */
+public class PrimeStreamTest {
+
+    @Test
+    public void testIterator_2() {
+        NaturalNumber start = new NaturalNumber2(2);
+        NaturalNumber startExpected = new NaturalNumber2(2);
+        Iterator<NaturalNumber> primes = PrimeStream.iterator(start);
+        final int[] expected = { 2, 3, 5, 7, 11, 13, 17, 19, 23, 29 };
+        for (int p : expected) {
+            assertEquals(new NaturalNumber2(p), primes.next());
+        }
+        assertEquals(startExpected, start);
+    }
+
+    @Test
+    public void testStream_1000000000000() {
+        NaturalNumber start = new NaturalNumber2("1000000000000");
+        List<String> result = PrimeStream.stream(start).limit(3)
+                .map(NaturalNumber::toString).collect(Collectors.toList());
+        assertEquals(Arrays.asList("1000000000039", "1000000000061",
+                "1000000000063"), result);
+    }
+
+    @Test
+    public void testStream_Parallel_100() {
+        NaturalNumber start = new NaturalNumber2(100);
+        final int count = 500;
+        List<NaturalNumber> sequential = PrimeStream.stream(start).limit(count)
+                .collect(Collectors.toList());
+        List<NaturalNumber> parallel = PrimeStream.stream(start).parallel()
+                .limit(count).collect(Collectors.toList());
+        assertEquals(sequential, parallel);
+        assertEquals(new NaturalNumber2(101), parallel.get(0));
+    }
+
+}
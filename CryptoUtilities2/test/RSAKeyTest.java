@@ -0,0 +1,82 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * Tests for RSAKey.
+ *
+ * @author Ayman Abumaike
+ *
+ */
+public class RSAKeyTest {
+
+    @Test
+    public void testFromPrimes_61_53() {
+        RSAKey key = RSAKey.fromPrimes(new NaturalNumber2(53),
+                new NaturalNumber2(61));
+        assertEquals(new NaturalNumber2(3233), key.modulus());
+        assertEquals(new NaturalNumber2(61), key.p());
+        assertEquals(new NaturalNumber2(53), key.q());
+        /*
+         * 65537 mod lcm(60, 52) = 17, and 17 * 413 = 1 (mod 780)
+         */
+        assertEquals(new NaturalNumber2(413), key.privateExponent());
+        assertEquals(new NaturalNumber2(53), key.dP());
+        assertEquals(new NaturalNumber2(49), key.dQ());
+        assertEquals(new NaturalNumber2(38), key.qInv());
+    }
+
+    @Test
+    public void testDecrypt_61_53() {
+        RSAKey key = RSAKey.fromPrimes(new NaturalNumber2(61),
+                new NaturalNumber2(53));
+        final int messages = 3233;
+        for (int i = 0; i < messages; i++) {
+            NaturalNumber m = new NaturalNumber2(i);
+            key.encrypt(m);
+            key.decrypt(m);
+            assertEquals(new NaturalNumber2(i), m);
+        }
+    }
+
+    @Test
+    public void testGenerate_20Digits() {
+        final int digits = 20;
+        RSAKey key = RSAKey.generate(new NaturalNumber4(), digits);
+        NaturalNumber n = key.modulus();
+        assertEquals(2 * digits, n.toString().length());
+        assertEquals(true, CryptoUtilities2.isPrime2(key.p()));
+        assertEquals(true, CryptoUtilities2.isPrime2(key.q()));
+        NaturalNumber pq = key.p();
+        pq.multiply(key.q());
+        assertEquals(n, pq);
+
+        NaturalNumber c = new NaturalNumber2("1234567890123456789012345");
+        NaturalNumber expected = new NaturalNumber2(c);
+        CryptoUtilities2.powerMod(expected, key.privateExponent(),
+                key.modulus());
+        key.decrypt(c);
+        assertEquals(expected, c);
+        key.encrypt(c);
+        assertEquals(new NaturalNumber2("1234567890123456789012345"), c);
+    }
+
+    @Test
+    public void testGenerate_InterruptedKeepsInterrupt() {
+        final int digits = 20;
+        boolean thrown = false;
+        Thread.currentThread().interrupt();
+        try {
+            RSAKey.generate(new NaturalNumber4(), digits);
+        } catch (IllegalStateException e) {
+            thrown = true;
+        }
+        boolean interrupted = Thread.interrupted();
+        assertEquals(true, thrown);
+        assertEquals(true, interrupted);
+    }
+
+}
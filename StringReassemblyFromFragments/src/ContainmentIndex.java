@@ -0,0 +1,289 @@
+import java.util.Arrays;
+
+/**
+ * Index of a growing collection of strings that reports, in O(|str|) time
+ * (for a bounded alphabet), whether {@code str} is a substring of any string
+ * added so far. It is a generalized suffix automaton: every substring of an
+ * added string is spelled by a path from the initial state, and the automaton
+ * has fewer than 2N states for N characters added in total.
+ *
+ * <p>
+ * Transitions are kept in edge lists, one per state, stored in parallel
+ * arrays; an automaton over text has few transitions per state, so a short
+ * linear search beats a map per state in both time and memory.
+ * </p>
+ *
+ * @author Ayman Abumaike
+ *
+ */
+final class ContainmentIndex {
+
+    /**
+     * Initial capacity of the state and edge arrays.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Marks the end of an edge list, and the missing suffix link of the
+     * initial state.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * The initial state.
+     */
+    private static final int ROOT = 0;
+
+    /**
+     * Length of the longest string reaching each state.
+     */
+    private int[] length;
+
+    /**
+     * Suffix link of each state.
+     */
+    private int[] link;
+
+    /**
+     * First edge out of each state, or NONE.
+     */
+    private int[] firstEdge;
+
+    /**
+     * Number of states.
+     */
+    private int states;
+
+    /**
+     * Label of each edge.
+     */
+    private char[] edgeLabel;
+
+    /**
+     * Target state of each edge.
+     */
+    private int[] edgeTarget;
+
+    /**
+     * Next edge out of the same state, or NONE.
+     */
+    private int[] nextEdge;
+
+    /**
+     * Number of edges.
+     */
+    private int edges;
+
+    /**
+     * Number of strings added.
+     */
+    private int strings;
+
+    /**
+     * Constructor; the index starts empty.
+     */
+    ContainmentIndex() {
+        this.length = new int[INITIAL_CAPACITY];
+        this.link = new int[INITIAL_CAPACITY];
+        this.firstEdge = new int[INITIAL_CAPACITY];
+        this.edgeLabel = new char[INITIAL_CAPACITY];
+        this.edgeTarget = new int[INITIAL_CAPACITY];
+        this.nextEdge = new int[INITIAL_CAPACITY];
+        this.newState(0, NONE);
+    }
+
+    /**
+     * Adds a state with no transitions.
+     *
+     * @param stateLength
+     *            length of the longest string reaching the state
+     * @param stateLink
+     *            suffix link of the state
+     * @return the new state
+     */
+    private int newState(int stateLength, int stateLink) {
+        if (this.states == this.length.length) {
+            int capacity = 2 * this.states;
+            this.length = Arrays.copyOf(this.length, capacity);
+            this.link = Arrays.copyOf(this.link, capacity);
+            this.firstEdge = Arrays.copyOf(this.firstEdge, capacity);
+        }
+        int state = this.states;
+        this.length[state] = stateLength;
+        this.link[state] = stateLink;
+        this.firstEdge[state] = NONE;
+        this.states++;
+        return state;
+    }
+
+    /**
+     * Returns the edge out of state labeled c.
+     *
+     * @param state
+     *            the state
+     * @param c
+     *            the label
+     * @return the edge, or NONE if there is none
+     */
+    private int edge(int state, char c) {
+        int e = this.firstEdge[state];
+        while (e != NONE && this.edgeLabel[e] != c) {
+            e = this.nextEdge[e];
+        }
+        return e;
+    }
+
+    /**
+     * Adds an edge labeled c from state to target.
+     *
+     * @param state
+     *            the source state
+     * @param c
+     *            the label
+     * @param target
+     *            the target state
+     * @requires edge(state, c) = NONE
+     */
+    private void addEdge(int state, char c, int target) {
+        if (this.edges == this.edgeLabel.length) {
+            int capacity = 2 * this.edges;
+            this.edgeLabel = Arrays.copyOf(this.edgeLabel, capacity);
+            this.edgeTarget = Arrays.copyOf(this.edgeTarget, capacity);
+            this.nextEdge = Arrays.copyOf(this.nextEdge, capacity);
+        }
+        this.edgeLabel[this.edges] = c;
+        this.edgeTarget[this.edges] = target;
+        this.nextEdge[this.edges] = this.firstEdge[state];
+        this.firstEdge[state] = this.edges;
+        this.edges++;
+    }
+
+    /**
+     * Splits state q, reached from state p by c, so that the part reached
+     * from p is a state whose longest string is one longer than that of p.
+     *
+     * @param p
+     *            the source state
+     * @param c
+     *            the label
+     * @param q
+     *            the target of the edge out of p labeled c
+     * @return the new state
+     * @requires length[q] > length[p] + 1
+     */
+    private int split(int p, char c, int q) {
+        int clone = this.newState(this.length[p] + 1, this.link[q]);
+        for (int e = this.firstEdge[q]; e != NONE; e = this.nextEdge[e]) {
+            this.addEdge(clone, this.edgeLabel[e], this.edgeTarget[e]);
+        }
+        int s = p;
+        int e = this.edge(s, c);
+        while (e != NONE && this.edgeTarget[e] == q) {
+            this.edgeTarget[e] = clone;
+            s = this.link[s];
+            e = NONE;
+            if (s != NONE) {
+                e = this.edge(s, c);
+            }
+        }
+        this.link[q] = clone;
+        return clone;
+    }
+
+    /**
+     * Extends the automaton by c after the state last.
+     *
+     * @param last
+     *            the state of the prefix added so far of the current string
+     * @param c
+     *            the next character
+     * @return the state of the prefix extended by c
+     */
+    private int extend(int last, char c) {
+        int result;
+        int e = this.edge(last, c);
+        if (e != NONE) {
+            /*
+             * The extended prefix is already a substring of an earlier string
+             */
+            int q = this.edgeTarget[e];
+            result = q;
+            if (this.length[q] != this.length[last] + 1) {
+                result = this.split(last, c, q);
+            }
+        } else {
+            int current = this.newState(this.length[last] + 1, ROOT);
+            int p = last;
+            while (p != NONE && e == NONE) {
+                this.addEdge(p, c, current);
+                p = this.link[p];
+                if (p != NONE) {
+                    e = this.edge(p, c);
+                }
+            }
+            if (p != NONE) {
+                int q = this.edgeTarget[e];
+                /*
+                 * split may grow the arrays, so it is called before link is
+                 * dereferenced
+                 */
+                int suffix = q;
+                if (this.length[q] != this.length[p] + 1) {
+                    suffix = this.split(p, c, q);
+                }
+                this.link[current] = suffix;
+            }
+            result = current;
+        }
+        return result;
+    }
+
+    /**
+     * Adds {@code str} to this index.
+     *
+     * @param str
+     *            the string
+     * @updates this
+     * @ensures this = #this union {str}
+     */
+    void add(String str) {
+        assert str != null : "Violation of: str is not null";
+
+        int last = ROOT;
+        for (int i = 0; i < str.length(); i++) {
+            last = this.extend(last, str.charAt(i));
+        }
+        this.strings++;
+    }
+
+    /**
+     * Reports whether {@code str} is a substring of some string in this index.
+     *
+     * @param str
+     *            the string
+     * @return true iff {@code str} is a substring of a string in this index
+     * @ensures <pre>
+     * isSubstringOfMember =
+     *  there exists s: string of character
+     *      where (s is in this)
+     *   (str is substring of s)
+     * </pre>
+     */
+    boolean isSubstringOfMember(String str) {
+        assert str != null : "Violation of: str is not null";
+
+        boolean found = this.strings > 0;
+        int state = ROOT;
+        int i = 0;
+        while (found && i < str.length()) {
+            int e = this.edge(state, str.charAt(i));
+            found = e != NONE;
+            if (found) {
+                state = this.edgeTarget[e];
+            }
+            i++;
+        }
+        return found;
+    }
+
+}
@@ -0,0 +1,469 @@
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * All-pairs overlap matrix for the greedy assembler in
+ * {@code StringReassembly}. The overlaps between the initial fragments are
+ * computed once; after each merge the matrix is updated in place instead of
+ * being recomputed.
+ *
+ * <p>
+ * When the greedy step merges {@code a} and {@code b} (with the largest
+ * overlap k of any pair) into {@code c = a[0, |a|-k) * b}, no overlap needs to
+ * be computed for {@code c}: as long as no fragment is a substring of
+ * another, a suffix of {@code c} that is a prefix of some {@code y} is a
+ * suffix of {@code b}, and a prefix of {@code c} that is a suffix of some
+ * {@code x} is a prefix of {@code a} (anything longer would contain {@code b},
+ * resp. {@code a}, as a substring of {@code y}, resp. {@code x}). So the row of
+ * {@code c} is the row of {@code b} and its column is the column of
+ * {@code a}; {@code c} takes over the slot of {@code a}, whose row is replaced
+ * by that of {@code b}, and the slot of {@code b} is retired. The maximality
+ * of k also guarantees that {@code c} contains no other fragment.
+ * </p>
+ *
+ * <p>
+ * Each row keeps its largest entry (first column on ties), and is only
+ * rescanned when its best column is retired. Every row best found is pushed
+ * onto a max-heap of candidate merges, ordered by overlap and then by row and
+ * column, so ties go to the first row and column as in a scan of the matrix.
+ * Candidates are not removed when a merge makes them obsolete; they are
+ * discarded when they reach the top of the heap, so the next merge is found
+ * in O(log E) time for E candidates pushed.
+ * </p>
+ *
+ * <p>
+ * The initial matrix is computed on a ForkJoinPool: the pair space is split
+ * into tiles of at most {@code TILE_SIDE} rows by {@code TILE_SIDE} columns,
+ * and each tile fills its own cells of the matrix, so no two workers ever
+ * write to the same cell and no locking is needed. With one worker, the tiles
+ * are filled in order on the calling thread, and no pool is used. Every entry is a function
+ * of its two fragments only, so the matrix, and hence the assembly, is the
+ * same whatever the number of workers.
+ * </p>
+ *
+ * @author Ayman Abumaike
+ *
+ */
+final class OverlapMatrix {
+
+    /**
+     * Rows (and columns) per tile of the initial computation; a tile reuses
+     * each row fragment and each column prefix function this many times.
+     */
+    private static final int TILE_SIDE = 32;
+
+    /**
+     * A candidate merge: the best entry of one row when it was pushed.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+
+        /**
+         * The overlap.
+         */
+        private final int overlap;
+
+        /**
+         * Slot of the fragment whose suffix overlaps.
+         */
+        private final int row;
+
+        /**
+         * Slot of the fragment whose prefix overlaps.
+         */
+        private final int column;
+
+        /**
+         * Constructor.
+         *
+         * @param overlap
+         *            the overlap
+         * @param row
+         *            slot of the fragment whose suffix overlaps
+         * @param column
+         *            slot of the fragment whose prefix overlaps
+         */
+        Candidate(int overlap, int row, int column) {
+            this.overlap = overlap;
+            this.row = row;
+            this.column = column;
+        }
+
+        /**
+         * Orders candidates so that the head of a (min-)heap is the largest
+         * overlap, and among those the first row, then the first column.
+         */
+        @Override
+        public int compareTo(Candidate other) {
+            int result = Integer.compare(other.overlap, this.overlap);
+            if (result == 0) {
+                result = Integer.compare(this.row, other.row);
+            }
+            if (result == 0) {
+                result = Integer.compare(this.column, other.column);
+            }
+            return result;
+        }
+
+    }
+
+    /**
+     * Fragment in each slot, or null once the slot is retired.
+     */
+    private final String[] fragments;
+
+    /**
+     * overlaps[i][j] is the overlap of fragments[i] onto fragments[j], for
+     * live slots i /= j; rows of retired slots are null.
+     */
+    private final int[][] overlaps;
+
+    /**
+     * Largest entry of each live row (over live columns other than its own).
+     */
+    private final int[] rowBest;
+
+    /**
+     * Column of rowBest in each live row (the first one, on ties).
+     */
+    private final int[] rowBestColumn;
+
+    /**
+     * Candidate merges, some of which may be obsolete.
+     */
+    private final PriorityQueue<Candidate> candidates;
+
+    /**
+     * Constructor; computes the overlaps of every ordered pair of fragments
+     * on {@code parallelism} threads.
+     *
+     * @param fragments
+     *            the fragments
+     * @param parallelism
+     *            number of worker threads
+     * @requires <pre>
+     * [no entry of fragments is a substring of another]  and
+     * parallelism > 0
+     * </pre>
+     */
+    OverlapMatrix(String[] fragments, int parallelism) {
+        assert parallelism > 0 : "Violation of: parallelism > 0";
+
+        int n = fragments.length;
+        this.fragments = fragments.clone();
+        this.overlaps = new int[n][n];
+        /*
+         * One prefix function per column, shared by every tile of the column
+         */
+        int[][] borders = new int[n][];
+        for (int j = 0; j < n; j++) {
+            borders[j] = StringReassembly.borders(fragments[j]);
+        }
+        if (parallelism == 1 || n <= TILE_SIDE) {
+            /*
+             * Tile by tile on this thread; Tiles forks, so it is only used
+             * on a pool of our own
+             */
+            for (int rowFrom = 0; rowFrom < n; rowFrom += TILE_SIDE) {
+                for (int columnFrom = 0; columnFrom < n;
+                        columnFrom += TILE_SIDE) {
+                    fillTile(this.fragments, borders, this.overlaps, rowFrom,
+                            Math.min(rowFrom + TILE_SIDE, n), columnFrom,
+                            Math.min(columnFrom + TILE_SIDE, n));
+                }
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new Tiles(this.fragments, borders, this.overlaps,
+                        0, n, 0, n));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        this.rowBest = new int[n];
+        this.rowBestColumn = new int[n];
+        this.candidates = new PriorityQueue<>();
+        for (int i = 0; i < n; i++) {
+            this.rescanRow(i);
+        }
+    }
+
+    /**
+     * Computes the overlaps of the rows [rowFrom, rowTo) onto the columns
+     * [columnFrom, columnTo).
+     *
+     * @param fragments
+     *            all the fragments
+     * @param borders
+     *            prefix function of each fragment
+     * @param overlaps
+     *            the matrix being filled
+     * @param rowFrom
+     *            first row
+     * @param rowTo
+     *            one past the last row
+     * @param columnFrom
+     *            first column
+     * @param columnTo
+     *            one past the last column
+     * @updates overlaps
+     */
+    private static void fillTile(String[] fragments, int[][] borders,
+            int[][] overlaps, int rowFrom, int rowTo, int columnFrom,
+            int columnTo) {
+        for (int i = rowFrom; i < rowTo; i++) {
+            int[] row = overlaps[i];
+            for (int j = columnFrom; j < columnTo; j++) {
+                if (i != j) {
+                    row[j] = StringReassembly.overlap(fragments[i],
+                            fragments[j], borders[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes rowBest[i] and rowBestColumn[i] from row i, and pushes the
+     * result as a candidate merge if it is an overlap.
+     *
+     * @param i
+     *            a live slot
+     */
+    private void rescanRow(int i) {
+        int best = 0;
+        int bestColumn = -1;
+        int[] row = this.overlaps[i];
+        for (int j = 0; j < row.length; j++) {
+            if (j != i && this.fragments[j] != null && row[j] > best) {
+                best = row[j];
+                bestColumn = j;
+            }
+        }
+        this.rowBest[i] = best;
+        this.rowBestColumn[i] = bestColumn;
+        if (best > 0) {
+            this.candidates.add(new Candidate(best, i, bestColumn));
+        }
+    }
+
+    /**
+     * Reports whether c is still the best entry of its row, with both of its
+     * slots live.
+     *
+     * @param c
+     *            the candidate
+     * @return true iff c is up to date
+     */
+    private boolean isCurrent(Candidate c) {
+        return this.fragments[c.row] != null
+                && this.fragments[c.column] != null
+                && this.rowBest[c.row] == c.overlap
+                && this.rowBestColumn[c.row] == c.column;
+    }
+
+    /**
+     * Returns the largest overlap between two live fragments, and identifies
+     * the slots of the two fragments that achieve it (the first row, and the
+     * first column in that row, on ties).
+     *
+     * @param bestTwo
+     *            an array containing (upon return) the slots of the fragments
+     *            whose suffix and prefix, respectively, overlap the most
+     * @return the largest overlap, or 0 if no two live fragments overlap
+     * @replaces bestTwo[0], bestTwo[1]
+     * @requires bestTwo.length >= 2
+     */
+    int bestOverlap(int[] bestTwo) {
+        /*
+         * Discard obsolete candidates; the first current one is the best
+         * entry of the best row, and stays in the heap until a merge makes it
+         * obsolete too
+         */
+        while (!this.candidates.isEmpty()
+                && !this.isCurrent(this.candidates.peek())) {
+            this.candidates.poll();
+        }
+        int best = 0;
+        if (!this.candidates.isEmpty()) {
+            Candidate c = this.candidates.peek();
+            best = c.overlap;
+            bestTwo[0] = c.row;
+            bestTwo[1] = c.column;
+        }
+        return best;
+    }
+
+    /**
+     * Replaces the fragment in slot a by its combination with the fragment in
+     * slot b, and retires slot b.
+     *
+     * @param a
+     *            slot of the fragment whose suffix overlaps
+     * @param b
+     *            slot of the fragment whose prefix overlaps
+     * @param overlap
+     *            the overlap of fragment a onto fragment b
+     * @requires <pre>
+     * a /= b  and  [a and b are live]  and
+     * overlap = [the largest overlap between two live fragments]  and
+     * overlap = [overlap of fragment a onto fragment b]
+     * </pre>
+     */
+    void merge(int a, int b, int overlap) {
+        this.fragments[a] = StringReassembly.combination(this.fragments[a],
+                this.fragments[b], overlap);
+        this.fragments[b] = null;
+        /*
+         * The combination overlaps others as b does, and is overlapped by
+         * others as a was; the entry for b onto a would now be the
+         * combination onto itself, which is never used
+         */
+        this.overlaps[a] = this.overlaps[b];
+        this.overlaps[a][a] = 0;
+        this.overlaps[b] = null;
+        this.rescanRow(a);
+        for (int i = 0; i < this.fragments.length; i++) {
+            if (i != a && this.fragments[i] != null
+                    && this.rowBestColumn[i] == b) {
+                this.rescanRow(i);
+            }
+        }
+    }
+
+    /**
+     * Returns the fragments in the live slots.
+     *
+     * @return the live fragments, in slot order
+     */
+    String[] fragments() {
+        int count = 0;
+        for (String fragment : this.fragments) {
+            if (fragment != null) {
+                count++;
+            }
+        }
+        String[] result = new String[count];
+        count = 0;
+        for (String fragment : this.fragments) {
+            if (fragment != null) {
+                result[count] = fragment;
+                count++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the overlaps of the rows [rowFrom, rowTo) onto the columns
+     * [columnFrom, columnTo), splitting the larger side in half until the tile
+     * is at most TILE_SIDE by TILE_SIDE.
+     */
+    private static final class Tiles extends RecursiveAction {
+
+        /**
+         * Serialization identifier.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * All the fragments.
+         */
+        private final String[] fragments;
+
+        /**
+         * Prefix function of each fragment.
+         */
+        private final int[][] borders;
+
+        /**
+         * The matrix being filled.
+         */
+        private final int[][] overlaps;
+
+        /**
+         * First row of this task.
+         */
+        private final int rowFrom;
+
+        /**
+         * One past the last row of this task.
+         */
+        private final int rowTo;
+
+        /**
+         * First column of this task.
+         */
+        private final int columnFrom;
+
+        /**
+         * One past the last column of this task.
+         */
+        private final int columnTo;
+
+        /**
+         * Constructor.
+         *
+         * @param fragments
+         *            all the fragments
+         * @param borders
+         *            prefix function of each fragment
+         * @param overlaps
+         *            the matrix being filled
+         * @param rowFrom
+         *            first row
+         * @param rowTo
+         *            one past the last row
+         * @param columnFrom
+         *            first column
+         * @param columnTo
+         *            one past the last column
+         */
+        Tiles(String[] fragments, int[][] borders, int[][] overlaps,
+                int rowFrom, int rowTo, int columnFrom, int columnTo) {
+            this.fragments = fragments;
+            this.borders = borders;
+            this.overlaps = overlaps;
+            this.rowFrom = rowFrom;
+            this.rowTo = rowTo;
+            this.columnFrom = columnFrom;
+            this.columnTo = columnTo;
+        }
+
+        @Override
+        protected void compute() {
+            /*
+             * invokeAll from outside a pool would fork onto the common pool
+             */
+            assert inForkJoinPool() : "Violation of: running on a pool";
+
+            int rows = this.rowTo - this.rowFrom;
+            int columns = this.columnTo - this.columnFrom;
+            if (rows > TILE_SIDE && rows >= columns) {
+                int middle = (this.rowFrom + this.rowTo) >>> 1;
+                invokeAll(
+                        new Tiles(this.fragments, this.borders, this.overlaps,
+                                this.rowFrom, middle, this.columnFrom,
+                                this.columnTo),
+                        new Tiles(this.fragments, this.borders, this.overlaps,
+                                middle, this.rowTo, this.columnFrom,
+                                this.columnTo));
+            } else if (columns > TILE_SIDE) {
+                int middle = (this.columnFrom + this.columnTo) >>> 1;
+                invokeAll(
+                        new Tiles(this.fragments, this.borders, this.overlaps,
+                                this.rowFrom, this.rowTo, this.columnFrom,
+                                middle),
+                        new Tiles(this.fragments, this.borders, this.overlaps,
+                                this.rowFrom, this.rowTo, middle,
+                                this.columnTo));
+            } else {
+                fillTile(this.fragments, this.borders, this.overlaps,
+                        this.rowFrom, this.rowTo, this.columnFrom,
+                        this.columnTo);
+            }
+        }
+
+    }
+
+}
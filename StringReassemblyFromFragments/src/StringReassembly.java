@@ -1,3 +1,7 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
 import components.set.Set;
 import components.set.Set1L;
 import components.simplereader.SimpleReader;
@@ -97,17 +101,118 @@ public final class StringReassembly {
                 + "str1 is not substring of str2";
         assert str1.indexOf(str2) < 0 : "Violation of: "
                 + "str2 is not substring of str1";
+
+        return overlap(str1, str2, borders(str2));
+    }
+
+    /**
+     * Returns the prefix function (failure function) of {@code str}, as used by
+     * Knuth-Morris-Pratt matching: entry i is the length of the longest proper
+     * prefix of {@code str[0, i+1)} that is also a suffix of it.
+     *
+     * @param str
+     *            the string
+     * @return the prefix function of {@code str}
+     * @ensures <pre>
+     * |borders| = |str|  and
+     * for all i: integer where (0 <= i < |str|)
+     *  (borders[i] = [the largest k < i+1 such that
+     *                 OVERLAPS(str[0, i+1), str[0, i+1), k)])
+     * </pre>
+     */
+    static int[] borders(String str) {
+        assert str != null : "Violation of: str is not null";
+
+        int[] borders = new int[str.length()];
+        int k = 0;
+        for (int i = 1; i < str.length(); i++) {
+            while (k > 0 && str.charAt(i) != str.charAt(k)) {
+                k = borders[k - 1];
+            }
+            if (str.charAt(i) == str.charAt(k)) {
+                k++;
+            }
+            borders[i] = k;
+        }
+        return borders;
+    }
+
+    /**
+     * Reports the maximum length, less than {@code |str2|}, of a common suffix
+     * of {@code str1} and prefix of {@code str2}, given the prefix function of
+     * {@code str2}. This is the Knuth-Morris-Pratt automaton for {@code str2}
+     * run over the last {@code |str2| - 1} characters of {@code str1}, so it
+     * takes O(|str2|) time; callers that compare one {@code str2} against many
+     * strings compute its prefix function only once.
+     *
+     * @param str1
+     *            first string
+     * @param str2
+     *            second string
+     * @param str2Borders
+     *            the prefix function of {@code str2}, as returned by
+     *            {@code borders(str2)}
+     * @return maximum overlap less than {@code |str2|} between right end of
+     *         {@code str1} and left end of {@code str2}
+     * @requires str2Borders = borders(str2)
+     * @ensures <pre>
+     * OVERLAPS(str1, str2, overlap)  and  overlap < |str2|  and
+     * for all k: integer
+     *     where (overlap < k  and  k < |str2|  and  k <= |str1|)
+     *  (not OVERLAPS(str1, str2, k))
+     * </pre>
+     */
+    static int overlap(String str1, String str2, int[] str2Borders) {
         /*
-         * Start with maximum possible overlap and work down until a match is
-         * found; think about it and try it on some examples to see why
-         * iterating in the other direction doesn't work
+         * No overlap can start before the last |str2| - 1 characters of str1,
+         * and fewer than |str2| characters can never match all of str2, so the
+         * final state of the automaton is the answer
          */
-        int maxOverlap = str2.length() - 1;
-        while (!str1.regionMatches(str1.length() - maxOverlap, str2, 0,
-                maxOverlap)) {
-            maxOverlap--;
+        int k = 0;
+        int start = Math.max(0, str1.length() - str2.length() + 1);
+        for (int i = start; i < str1.length(); i++) {
+            char c = str1.charAt(i);
+            while (k > 0 && c != str2.charAt(k)) {
+                k = str2Borders[k - 1];
+            }
+            if (c == str2.charAt(k)) {
+                k++;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Reports whether {@code str} occurs in {@code text}, given the prefix
+     * function of {@code str}. This is the Knuth-Morris-Pratt automaton for
+     * {@code str} run over {@code text}, so it takes O(|text| + |str|) time
+     * whatever the two strings are.
+     *
+     * @param str
+     *            the string searched for
+     * @param strBorders
+     *            the prefix function of {@code str}, as returned by
+     *            {@code borders(str)}
+     * @param text
+     *            the string searched
+     * @return true iff {@code str} is a substring of {@code text}
+     * @requires strBorders = borders(str)
+     * @ensures occursIn = (str is substring of text)
+     */
+    static boolean occursIn(String str, int[] strBorders, String text) {
+        int k = 0;
+        int i = 0;
+        while (k < str.length() && i < text.length()) {
+            char c = text.charAt(i);
+            while (k > 0 && c != str.charAt(k)) {
+                k = strBorders[k - 1];
+            }
+            if (c == str.charAt(k)) {
+                k++;
+            }
+            i++;
         }
-        return maxOverlap;
+        return k == str.length();
     }
 
     /**
@@ -176,29 +281,37 @@ public final class StringReassembly {
          * Note: Precondition not checked!
          */
 
-        // Loop through each element of set checking for substring
+        /*
+         * Is str a substring of an element? One prefix function for str, and
+         * then one linear-time search per element
+         */
+        int[] strBorders = borders(str);
         boolean found = false;
         for (String element : strSet) {
-            if (element.indexOf(str) != -1) {
+            if (!found && occursIn(str, strBorders, element)) {
                 found = true;
             }
         }
 
         // If string is not a substring, add string to set
         if (!found) {
-            strSet.add(str);
-            Set<String> set = new Set1L<>();
+            /*
+             * Which elements are substrings of str? Each is looked up in the
+             * suffix automaton of str, in time linear in its length; they are
+             * removed in place rather than by rebuilding the set
+             */
+            ContainmentIndex strIndex = new ContainmentIndex();
+            strIndex.add(str);
+            List<String> substrings = new ArrayList<>();
             for (String element : strSet) {
-                if (element.equals(str)) {
-                    set.add(element);
-
-                } else if (str.indexOf(element) == -1) {
-                    set.add(element);
+                if (strIndex.isSubstringOfMember(element)) {
+                    substrings.add(element);
                 }
             }
-
-            // Return set
-            strSet.transferFrom(set);
+            for (String element : substrings) {
+                strSet.remove(element);
+            }
+            strSet.add(str);
         }
 
     }
@@ -221,97 +334,28 @@ public final class StringReassembly {
         assert input != null : "Violation of: input is not null";
         assert input.isOpen() : "Violation of: input.is_open";
 
-        // TODO: fill in body
-
-        // Loop through each line of file, adding string to set if not substring
-        Set<String> set = new Set1L<>();
-        while (!(input.atEOS())) {
-            addToSetAvoidingSubstrings(set, input.nextLine());
-        }
-
-        return set;
-    }
-
-    /**
-     * Returns the longest overlap between the suffix of one string and the
-     * prefix of another string in {@code strSet}, and identifies the two
-     * strings that achieve that overlap.
-     *
-     * @param strSet
-     *            the set of strings examined
-     * @param bestTwo
-     *            an array containing (upon return) the two strings with the
-     *            largest such overlap between the suffix of {@code bestTwo[0]}
-     *            and the prefix of {@code bestTwo[1]}
-     * @return the amount of overlap between those two strings
-     * @replaces bestTwo[0], bestTwo[1]
-     * @requires <pre>
-     * CONTAINS_NO_SUBSTRING_PAIRS(strSet)  and
-     * bestTwo.length >= 2
-     * </pre>
-     * @ensures <pre>
-     * bestTwo[0] is in strSet  and
-     * bestTwo[1] is in strSet  and
-     * OVERLAPS(bestTwo[0], bestTwo[1], bestOverlap)  and
-     * for all str1, str2: string of character, overlap: integer
-     *     where (str1 is in strSet  and  str2 is in strSet  and
-     *            OVERLAPS(str1, str2, overlap))
-     *   (overlap <= bestOverlap)
-     * </pre>
-     */
-    private static int bestOverlap(Set<String> strSet, String[] bestTwo) {
-        assert strSet != null : "Violation of: strSet is not null";
-        assert bestTwo != null : "Violation of: bestTwo is not null";
-        assert bestTwo.length >= 2 : "Violation of: bestTwo.length >= 2";
         /*
-         * Note: Rest of precondition not checked!
+         * A line is kept iff no other line contains it (one copy of equal
+         * lines is kept), whatever the order of the lines; so the lines are
+         * considered longest first, and each is kept iff it is not a
+         * substring of a line already kept, which a suffix automaton of the
+         * kept lines answers in time linear in its length
          */
-        int bestOverlap = 0;
-        Set<String> processed = strSet.newInstance();
-        while (strSet.size() > 0) {
-            /*
-             * Remove one string from strSet to check against all others
-             */
-            String str0 = strSet.removeAny();
-            for (String str1 : strSet) {
-                /*
-                 * Check str0 and str1 for overlap first in one order...
-                 */
-                int overlapFrom0To1 = overlap(str0, str1);
-                if (overlapFrom0To1 > bestOverlap) {
-                    /*
-                     * Update best overlap found so far, and the two strings
-                     * that produced it
-                     */
-                    bestOverlap = overlapFrom0To1;
-                    bestTwo[0] = str0;
-                    bestTwo[1] = str1;
-                }
-                /*
-                 * ... and then in the other order
-                 */
-                int overlapFrom1To0 = overlap(str1, str0);
-                if (overlapFrom1To0 > bestOverlap) {
-                    /*
-                     * Update best overlap found so far, and the two strings
-                     * that produced it
-                     */
-                    bestOverlap = overlapFrom1To0;
-                    bestTwo[0] = str1;
-                    bestTwo[1] = str0;
-                }
+        List<String> lines = new ArrayList<>();
+        while (!(input.atEOS())) {
+            lines.add(input.nextLine());
+        }
+        lines.sort(Comparator.comparingInt(String::length).reversed());
+        ContainmentIndex kept = new ContainmentIndex();
+        Set<String> set = new Set1L<>();
+        for (String line : lines) {
+            if (!kept.isSubstringOfMember(line)) {
+                kept.add(line);
+                set.add(line);
             }
-            /*
-             * Record that str0 has been checked against every other string in
-             * strSet
-             */
-            processed.add(str0);
         }
-        /*
-         * Restore strSet and return best overlap
-         */
-        strSet.transferFrom(processed);
-        return bestOverlap;
+
+        return set;
     }
 
     /**
@@ -337,30 +381,34 @@ public final class StringReassembly {
          * Note: Precondition not checked!
          */
         /*
-         * Combine strings as much possible, being greedy
+         * Compute all pairwise overlaps once, then combine strings as much
+         * possible, being greedy; the matrix is updated in place after each
+         * combination (see OverlapMatrix for why no overlap needs to be
+         * recomputed)
          */
-        boolean done = false;
-        while ((strSet.size() > 1) && !done) {
-            String[] bestTwo = new String[2];
-            int bestOverlap = bestOverlap(strSet, bestTwo);
-            if (bestOverlap == 0) {
-                /*
-                 * No overlapping strings remain; can't do any more
-                 */
-                done = true;
-            } else {
-                /*
-                 * Replace the two most-overlapping strings with their
-                 * combination; this can be done with add rather than
-                 * addToSetAvoidingSubstrings because the latter would do the
-                 * same thing (this claim requires justification)
-                 */
-                strSet.remove(bestTwo[0]);
-                strSet.remove(bestTwo[1]);
-                String overlapped = combination(bestTwo[0], bestTwo[1],
-                        bestOverlap);
-                strSet.add(overlapped);
-            }
+        String[] fragments = new String[strSet.size()];
+        int count = 0;
+        for (String str : strSet) {
+            fragments[count] = str;
+            count++;
+        }
+        OverlapMatrix matrix = new OverlapMatrix(fragments,
+                Runtime.getRuntime().availableProcessors());
+        int[] bestTwo = new int[2];
+        int bestOverlap = matrix.bestOverlap(bestTwo);
+        while (bestOverlap > 0) {
+            /*
+             * Replace the two most-overlapping strings with their
+             * combination; no other string is a substring of it, since
+             * such a string would overlap one of the two by more than
+             * bestOverlap
+             */
+            matrix.merge(bestTwo[0], bestTwo[1], bestOverlap);
+            bestOverlap = matrix.bestOverlap(bestTwo);
+        }
+        strSet.clear();
+        for (String str : matrix.fragments()) {
+            strSet.add(str);
         }
     }
 
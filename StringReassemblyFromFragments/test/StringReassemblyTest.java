@@ -1,5 +1,13 @@
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.Test;
 
 import components.set.Set;
@@ -41,6 +49,42 @@ public class StringReassemblyTest {
         assertEquals(result, str2);
     }
 
+    // Tests for overlap():
+    @Test
+    public void testOverlapNone() {
+        int result = StringReassembly.overlap("dog", "cat");
+        assertEquals(0, result);
+    }
+
+    @Test
+    public void testOverlapAllButOne() {
+        int result = StringReassembly.overlap("xabc", "abcd");
+        assertEquals(3, result);
+    }
+
+    @Test
+    public void testOverlapPeriodic() {
+        int result = StringReassembly.overlap("xaaab", "aabaa");
+        assertEquals(3, result);
+    }
+
+    @Test
+    public void testOverlapPeriodic2() {
+        int result = StringReassembly.overlap("abab", "babx");
+        assertEquals(3, result);
+    }
+
+    @Test
+    public void testOverlapWithBorders() {
+        String str2 = "abaab";
+        int[] borders = StringReassembly.borders(str2);
+        assertEquals(0, borders[1]);
+        assertEquals(1, borders[2]);
+        assertEquals(2, borders[4]);
+        assertEquals(4, StringReassembly.overlap("cabaa", str2, borders));
+        assertEquals(2, StringReassembly.overlap("caab", str2, borders));
+    }
+
     // Tests for printWithLineSeparator():
     public void testPrintWithLineSeparator() {
         SimpleReader in = new SimpleReader1L("data/cheer-8-2.txt");
@@ -132,4 +176,167 @@ public class StringReassemblyTest {
         setTwo.add("Ayman");
         assertEquals(setOne, setTwo);
     }
+
+    @Test
+    public void testAddToSetAvoidingSubstrings3() {
+        Set<String> setOne = new Set1L<>();
+        setOne.add("Ay");
+        setOne.add("man");
+        setOne.add("Jill");
+        StringReassembly.addToSetAvoidingSubstrings(setOne, "Ayman");
+        StringReassembly.addToSetAvoidingSubstrings(setOne, "Ayman");
+        Set<String> setTwo = new Set1L<>();
+        setTwo.add("Ayman");
+        setTwo.add("Jill");
+        assertEquals(setOne, setTwo);
+    }
+
+    // Tests for assemble():
+
+    @Test
+    public void testAssembleChain() {
+        Set<String> setOne = new Set1L<>();
+        setOne.add("efgh");
+        setOne.add("abcd");
+        setOne.add("cdef");
+        StringReassembly.assemble(setOne);
+        Set<String> setTwo = new Set1L<>();
+        setTwo.add("abcdefgh");
+        assertEquals(setTwo, setOne);
+    }
+
+    @Test
+    public void testAssembleLeftovers() {
+        Set<String> setOne = new Set1L<>();
+        setOne.add("abc");
+        setOne.add("bcd");
+        setOne.add("xyz");
+        StringReassembly.assemble(setOne);
+        Set<String> setTwo = new Set1L<>();
+        setTwo.add("abcd");
+        setTwo.add("xyz");
+        assertEquals(setTwo, setOne);
+    }
+
+    @Test
+    public void testAssembleTiedColumns() {
+        String[] fragments = { "xab", "aby", "abz" };
+        OverlapMatrix matrix = new OverlapMatrix(fragments, 1);
+        int[] bestTwo = new int[2];
+        assertEquals(2, matrix.bestOverlap(bestTwo));
+        assertEquals(0, bestTwo[0]);
+        assertEquals(1, bestTwo[1]);
+        matrix.merge(bestTwo[0], bestTwo[1], 2);
+        assertEquals(0, matrix.bestOverlap(bestTwo));
+        assertArrayEquals(new String[] { "xaby", "abz" }, matrix.fragments());
+    }
+
+    @Test
+    public void testAssembleTiedRows() {
+        String[] fragments = { "pab", "qab", "abr" };
+        OverlapMatrix matrix = new OverlapMatrix(fragments, 1);
+        int[] bestTwo = new int[2];
+        assertEquals(2, matrix.bestOverlap(bestTwo));
+        assertEquals(0, bestTwo[0]);
+        assertEquals(2, bestTwo[1]);
+        matrix.merge(bestTwo[0], bestTwo[1], 2);
+        assertEquals(0, matrix.bestOverlap(bestTwo));
+        assertArrayEquals(new String[] { "pabr", "qab" }, matrix.fragments());
+    }
+
+    /**
+     * Runs the greedy merges on an overlap matrix built with the given
+     * parallelism, and records every merge and the fragments left.
+     *
+     * @param fragments
+     *            the fragments
+     * @param parallelism
+     *            number of worker threads
+     * @return the merges, in order, followed by the fragments left
+     */
+    private static List<String> mergeLog(String[] fragments,
+            int parallelism) {
+        List<String> log = new ArrayList<>();
+        OverlapMatrix matrix = new OverlapMatrix(fragments, parallelism);
+        int[] bestTwo = new int[2];
+        int bestOverlap = matrix.bestOverlap(bestTwo);
+        while (bestOverlap > 0) {
+            log.add(bestTwo[0] + " " + bestTwo[1] + " " + bestOverlap);
+            matrix.merge(bestTwo[0], bestTwo[1], bestOverlap);
+            bestOverlap = matrix.bestOverlap(bestTwo);
+        }
+        log.addAll(Arrays.asList(matrix.fragments()));
+        return log;
+    }
+
+    /**
+     * Returns a random text over the letters a, c, g and t.
+     *
+     * @param random
+     *            the source of randomness
+     * @param length
+     *            length of the text
+     * @return the text
+     */
+    private static String randomText(Random random, int length) {
+        final String alphabet = "acgt";
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void testOverlapMatrixParallelSameAsSequential() {
+        /*
+         * Windows of 12 letters every 5 letters of a random text, in shuffled
+         * order: more than 32 fragments, so the parallel tiles are used
+         */
+        final int fragmentCount = 100;
+        final int length = 12;
+        final int step = 5;
+        final long seed = 42;
+        Random random = new Random(seed);
+        String text = randomText(random, fragmentCount * step + length);
+        List<String> windows = new ArrayList<>();
+        for (int i = 0; i < fragmentCount; i++) {
+            windows.add(text.substring(i * step, i * step + length));
+        }
+        Collections.shuffle(windows, random);
+        String[] fragments = windows.toArray(new String[0]);
+
+        List<String> sequential = mergeLog(fragments, 1);
+        assertEquals(sequential, mergeLog(fragments, 2));
+        assertEquals(sequential, mergeLog(fragments, 4));
+        assertEquals(text.substring(0, (fragmentCount - 1) * step + length),
+                sequential.get(sequential.size() - 1));
+    }
+
+    @Test
+    public void testOverlapMatrixSequentialOffPool() {
+        /*
+         * More than 32 fragments with one worker: the tiles must be filled
+         * on this thread, so the common pool runs nothing (and the forking
+         * tile task, which asserts that it runs on a pool, is not used)
+         */
+        final int fragmentCount = 100;
+        final int length = 12;
+        final int step = 5;
+        final long seed = 7;
+        String text = randomText(new Random(seed),
+                fragmentCount * step + length);
+        String[] fragments = new String[fragmentCount];
+        for (int i = 0; i < fragmentCount; i++) {
+            fragments[i] = text.substring(i * step, i * step + length);
+        }
+
+        ForkJoinPool common = ForkJoinPool.commonPool();
+        long steals = common.getStealCount();
+        List<String> log = mergeLog(fragments, 1);
+        assertEquals(steals, common.getStealCount());
+        assertEquals(0, common.getQueuedSubmissionCount());
+        assertEquals(text.substring(0, (fragmentCount - 1) * step + length),
+                log.get(log.size() - 1));
+    }
 }